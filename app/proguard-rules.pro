@@ -19,3 +19,9 @@
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
 #-renamesourcefileattribute SourceFile
+
+# 编译期生成的 ViewModel 工厂是按类名查找的
+-keep class * extends androidx.lifecycle.ViewModelProvider$GeneratedFactory {
+    <init>();
+}
+-keepnames @androidx.lifecycle.GenerateViewModelFactory class *
@@ -0,0 +1,229 @@
+package androidx.fragment.app;
+
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Inflates fragment views on a background thread while the transaction that adds the fragment is
+ * still pending.
+ *
+ * <p>Inflation is requested with {@link #submit(String, int, Callable)}, keyed by the fragment's
+ * who, before the transaction is committed. When the fragment creates its view it calls
+ * {@link #take(String, int)}: a finished inflation is handed over, one that has not started yet
+ * is cancelled, and one in progress is waited for up to the configured limit. In every other
+ * case, including a failed inflation, take returns null and the caller inflates synchronously, so
+ * preinflating never changes what the fragment ends up showing.</p>
+ *
+ * <p>Submitting and taking happen on the main thread; only the inflation itself runs on the
+ * executor.</p>
+ *
+ * @param <V> the view type
+ */
+final class AsyncViewInflater<V> {
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int FAILED = 3;
+    private static final int CANCELLED = 4;
+
+    private static Executor sSharedExecutor;
+
+    private final Executor mExecutor;
+    private final long mMaxWaitNanos;
+    private final HashMap<String, Request<V>> mRequests = new HashMap<>();
+    private int mHits;
+    private int mFallbacks;
+
+    /**
+     * @param maxWaitMillis how long {@link #take(String, int)} waits for an inflation that is in
+     *                      progress before falling back
+     */
+    AsyncViewInflater(Executor executor, long maxWaitMillis) {
+        if (maxWaitMillis < 0) {
+            throw new IllegalArgumentException("maxWaitMillis < 0");
+        }
+        mExecutor = executor;
+        mMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /**
+     * Returns the executor shared by all hosts. It runs one inflation at a time, so each host's
+     * layout inflater is only ever used by one background thread, and lets its thread die when
+     * idle.
+     */
+    static synchronized Executor sharedExecutor() {
+        if (sSharedExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "FragmentViewInflater");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            sSharedExecutor = executor;
+        }
+        return sSharedExecutor;
+    }
+
+    /**
+     * Starts inflating layoutId for key, replacing any earlier request for the same key.
+     *
+     * @return false if the executor rejected the inflation
+     */
+    boolean submit(String key, int layoutId, Callable<V> inflation) {
+        Request<V> request = new Request<>(layoutId, inflation);
+        Request<V> old = mRequests.put(key, request);
+        if (old != null) {
+            old.cancel();
+        }
+        try {
+            mExecutor.execute(request);
+        } catch (RejectedExecutionException e) {
+            mRequests.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Takes the view inflated for key.
+     *
+     * @return the view, or null if the caller has to inflate layoutId itself
+     */
+    V take(String key, int layoutId) {
+        Request<V> request = mRequests.remove(key);
+        if (request == null) {
+            return null;
+        }
+        V view = request.take(layoutId, mMaxWaitNanos);
+        if (view != null) {
+            mHits++;
+        } else {
+            mFallbacks++;
+        }
+        return view;
+    }
+
+    /**
+     * Drops the request for key, e.g. because the fragment was removed before creating its view.
+     *
+     * @return whether there was a request
+     */
+    boolean cancel(String key) {
+        Request<V> request = mRequests.remove(key);
+        if (request == null) {
+            return false;
+        }
+        request.cancel();
+        return true;
+    }
+
+    void clear() {
+        for (Request<V> request : mRequests.values()) {
+            request.cancel();
+        }
+        mRequests.clear();
+    }
+
+    /**
+     * Number of requests not taken yet.
+     */
+    int getPendingCount() {
+        return mRequests.size();
+    }
+
+    /**
+     * Number of views handed over from a background inflation.
+     */
+    int getHits() {
+        return mHits;
+    }
+
+    /**
+     * Number of requested views that were inflated synchronously after all.
+     */
+    int getFallbacks() {
+        return mFallbacks;
+    }
+
+    private static final class Request<V> implements Runnable {
+        final int mLayoutId;
+        // Only read by run() after it moved the request out of QUEUED
+        private Callable<V> mInflation;
+        private final AtomicInteger mState = new AtomicInteger(QUEUED);
+        private final CountDownLatch mFinished = new CountDownLatch(1);
+        private volatile V mView;
+
+        Request(int layoutId, Callable<V> inflation) {
+            mLayoutId = layoutId;
+            mInflation = inflation;
+        }
+
+        @Override
+        public void run() {
+            if (!mState.compareAndSet(QUEUED, RUNNING)) {
+                return;
+            }
+            V view = null;
+            try {
+                view = mInflation.call();
+            } catch (Exception e) {
+                // Typically a view that needs a Looper; the fragment inflates it synchronously.
+            } finally {
+                mInflation = null;
+            }
+            mView = view;
+            if (!mState.compareAndSet(RUNNING, view != null ? DONE : FAILED)) {
+                // Cancelled while inflating
+                mView = null;
+            }
+            mFinished.countDown();
+        }
+
+        V take(int layoutId, long maxWaitNanos) {
+            if (layoutId != mLayoutId) {
+                cancel();
+                return null;
+            }
+            if (mState.compareAndSet(QUEUED, CANCELLED)) {
+                // Not started; inflating on the caller's thread is no slower.
+                mInflation = null;
+                return null;
+            }
+            if (mState.get() == RUNNING && maxWaitNanos > 0) {
+                try {
+                    mFinished.await(maxWaitNanos, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (mState.get() == DONE) {
+                V view = mView;
+                mView = null;
+                return view;
+            }
+            cancel();
+            return null;
+        }
+
+        void cancel() {
+            if (mState.compareAndSet(QUEUED, CANCELLED)) {
+                mInflation = null;
+            } else {
+                mState.compareAndSet(RUNNING, CANCELLED);
+            }
+            mView = null;
+        }
+    }
+}
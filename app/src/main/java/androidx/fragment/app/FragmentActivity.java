@@ -4,6 +4,7 @@ import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
 
 import android.annotation.SuppressLint;
 import android.app.Activity;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentSender;
@@ -11,33 +12,44 @@ import android.content.res.Configuration;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
-import android.os.Message;
 import android.os.Parcelable;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.LayoutInflater;
+import android.view.Choreographer;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewGroup;
 import android.view.Window;
 
 import androidx.annotation.CallSuper;
+import androidx.annotation.IdRes;
+import androidx.annotation.LayoutRes;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 import androidx.annotation.RestrictTo;
 import androidx.collection.SparseArrayCompat;
 import androidx.core.app.ActivityCompat;
 import androidx.core.app.ComponentActivity;
 import androidx.core.app.SharedElementCallback;
+import androidx.lifecycle.BoundedViewModelStore;
 import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleExecutor;
 import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.ViewModelMetrics;
+import androidx.lifecycle.ViewModelSnapshot;
 import androidx.lifecycle.ViewModelStore;
 import androidx.lifecycle.ViewModelStoreOwner;
 import androidx.loader.app.LoaderManager;
 
+import java.io.File;
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.Callable;
 
 /**
  * Base class for activities that want to use the support-based
@@ -61,27 +73,34 @@ public class FragmentActivity extends ComponentActivity implements
     static final String ALLOCATED_REQUEST_INDICIES_TAG = "android:support:request_indicies";
     static final String REQUEST_FRAGMENT_WHO_TAG = "android:support:request_fragment_who";
     static final int MAX_NUM_PENDING_FRAGMENT_ACTIVITY_RESULTS = 0xffff - 1;
+    // How long a fragment creating its view waits for a preinflation in progress: about a frame
+    static final long PREINFLATE_MAX_WAIT_MILLIS = 16;
 
-    static final int MSG_RESUME_PENDING = 2;
-
-    @SuppressLint("HandlerLeak")
-    final Handler mHandler = new Handler() {
-        @Override
-        public void handleMessage(Message msg) {
-            switch (msg.what) {
-                case MSG_RESUME_PENDING:
+    final Handler mHandler = new Handler();
+    final FragmentController mFragments = FragmentController.createController(new HostCallbacks());
+    // Runs the deferred resume of fragments on the next frame
+    final ResumeFragmentsScheduler mResumeScheduler = new ResumeFragmentsScheduler(
+            new ResumeFragmentsScheduler.Host() {
+                @Override
+                public void resumeFragments() {
                     onResumeFragments();
-                    mFragments.execPendingActions();
-                    break;
-                default:
-                    super.handleMessage(msg);
-            }
-        }
+                }
 
-    };
-    final FragmentController mFragments = FragmentController.createController(new HostCallbacks());
+                @Override
+                public void execPendingActions() {
+                    mFragments.execPendingActions();
+                }
+            }, createFrameClock());
 
     private ViewModelStore mViewModelStore;
+    private RetainedObjectCache mRetainedObjects;
+    private LifecycleExecutor mLifecycleExecutor;
+    // ViewModel state saved before the process was killed, attached to the store once created
+    private ViewModelSnapshot mRestoredViewModelSnapshot;
+    // The file large ViewModel snapshots are written to, overwritten by every save and deleted
+    // when the activity finishes. Passed on through NonConfigurationInstances so the recreated
+    // activity keeps writing to the same file.
+    private File mViewModelSnapshotFile;
 
     boolean mCreated;
     boolean mResumed;
@@ -89,6 +108,42 @@ public class FragmentActivity extends ComponentActivity implements
 
     boolean mRequestedPermissionsFromFragment;
 
+    private final FragmentTreeMarker<FragmentManager, Fragment> mFragmentTreeMarker =
+            new FragmentTreeMarker<>(FRAGMENT_TREE);
+    // Set while markFragmentsCreated() walks the fragment tree
+    boolean mMarkingFragments;
+    // Set if a fragment reached STARTED during the walk, so it has to be walked again
+    boolean mFragmentStartedWhileMarking;
+    // Attached fragments by who, used to dispatch activity and permission results
+    final FragmentWhoIndex<Fragment> mFragmentsByWho = new FragmentWhoIndex<>();
+    // Fragment views inflated ahead of their transactions, see preinflateFragmentView(...)
+    private AsyncViewInflater<View> mViewPreinflater;
+    // The host's inflater for preinflation. Only used on the inflation thread once created.
+    private LayoutInflater mPreinflationInflater;
+    private final FragmentManager.FragmentLifecycleCallbacks mFragmentLifecycleCallbacks =
+            new FragmentManager.FragmentLifecycleCallbacks() {
+                @Override
+                public void onFragmentAttached(@NonNull FragmentManager fm, @NonNull Fragment f,
+                                               @NonNull Context context) {
+                    mFragmentsByWho.add(f.mWho, f);
+                }
+
+                @Override
+                public void onFragmentStarted(@NonNull FragmentManager fm, @NonNull Fragment f) {
+                    if (mMarkingFragments) {
+                        mFragmentStartedWhileMarking = true;
+                    }
+                }
+
+                @Override
+                public void onFragmentDetached(@NonNull FragmentManager fm, @NonNull Fragment f) {
+                    mFragmentsByWho.remove(f.mWho, f);
+                    if (mViewPreinflater != null) {
+                        mViewPreinflater.cancel(f.mWho);
+                    }
+                }
+            };
+
     // We need to keep track of whether startIntentSenderForResult originated from a Fragment, so we
     // can conditionally check whether the requestCode collides with our reserved ID space for the
     // request index (see above). Unfortunately we can't just call
@@ -102,11 +157,12 @@ public class FragmentActivity extends ComponentActivity implements
     // fragment, since we need to use the ActivityCompat version for backward compatibility.
     boolean mStartedActivityFromFragment;
 
-    // A hint for the next candidate request index. Request indicies are ints between 0 and 2^16-1
-    // which are encoded into the upper 16 bits of the requestCode for
-    // Fragment.startActivityForResult(...) calls. This allows us to dispatch onActivityResult(...)
-    // to the appropriate Fragment. Request indicies are allocated by allocateRequestIndex(...).
-    int mNextCandidateRequestIndex;
+    // Request indicies are ints between 0 and 2^16-1 which are encoded into the upper 16 bits of
+    // the requestCode for Fragment.startActivityForResult(...) calls. This allows us to dispatch
+    // onActivityResult(...) to the appropriate Fragment. Request indicies are allocated by
+    // allocateRequestIndex(...), which also keeps the hint for the next candidate index.
+    final RequestIndexAllocator mRequestIndices =
+            new RequestIndexAllocator(MAX_NUM_PENDING_FRAGMENT_ACTIVITY_RESULTS);
     // A map from request index to Fragment "who" (i.e. a Fragment's unique identifier). Used to
     // keep track of the originating Fragment for Fragment.startActivityForResult(...) calls, so we
     // can dispatch the onActivityResult(...) to the appropriate Fragment. Will only contain entries
@@ -117,6 +173,8 @@ public class FragmentActivity extends ComponentActivity implements
         Object custom;
         ViewModelStore viewModelStore; // TODO 这个内部类中存在 ViewModelStore
         FragmentManagerNonConfig fragments;
+        RetainedObjectCache retainedObjects;
+        File viewModelSnapshotFile;
     }
 
     // ------------------------------------------------------------------------
@@ -135,11 +193,12 @@ public class FragmentActivity extends ComponentActivity implements
 
             String who = mPendingFragmentActivityResults.get(requestIndex);
             mPendingFragmentActivityResults.remove(requestIndex);
+            mRequestIndices.release(requestIndex);
             if (who == null) {
                 Log.w(TAG, "Activity result delivered for unknown Fragment.");
                 return;
             }
-            Fragment targetFragment = mFragments.findFragmentByWho(who);
+            Fragment targetFragment = findFragmentByWho(who);
             if (targetFragment == null) {
                 Log.w(TAG, "Activity result no fragment exists for who: " + who);
             } else {
@@ -295,12 +354,74 @@ public class FragmentActivity extends ComponentActivity implements
                 mViewModelStore = nc.viewModelStore;
             }
             if (mViewModelStore == null) {  // 为空就新创建一个
-                mViewModelStore = new ViewModelStore();
+                mViewModelStore = onCreateViewModelStore();
+                mViewModelStore.setSnapshot(mRestoredViewModelSnapshot);
             }
+            mRestoredViewModelSnapshot = null;
         }
         return mViewModelStore;
     }
 
+    /**
+     * Creates the {@link ViewModelStore} for this activity when none was retained across a
+     * configuration change. Override to return a
+     * {@link androidx.lifecycle.ConcurrentViewModelStore} if ViewModels are resolved from
+     * background threads, or a {@link BoundedViewModelStore} to cap keyed ViewModels and
+     * release them on low memory.
+     *
+     * @return a new, empty {@code ViewModelStore}
+     */
+    @NonNull
+    protected ViewModelStore onCreateViewModelStore() {
+        return new ViewModelStore();
+    }
+
+    /**
+     * Returns the cache of objects that survive configuration changes together with this
+     * activity's ViewModelStore.
+     *
+     * @throws IllegalStateException if called before the Activity is attached to the Application
+     *                               instance i.e., before onCreate()
+     */
+    @NonNull
+    public RetainedObjectCache getRetainedObjects() {
+        if (getApplication() == null) {
+            throw new IllegalStateException("Your activity is not yet attached to the "
+                    + "Application instance. You can't request retained objects before onCreate "
+                    + "call.");
+        }
+        if (mRetainedObjects == null) {
+            mRetainedObjects = onCreateRetainedObjectCache();
+        }
+        return mRetainedObjects;
+    }
+
+    /**
+     * Creates the {@link RetainedObjectCache} for this activity when none was retained across a
+     * configuration change. By default it may keep an eighth of the heap alive; override to
+     * choose another budget.
+     *
+     * @return a new, empty {@code RetainedObjectCache}
+     */
+    @NonNull
+    protected RetainedObjectCache onCreateRetainedObjectCache() {
+        return new RetainedObjectCache(Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    /**
+     * Returns an executor for this activity's background work. Tasks are held back while the
+     * activity is stopped and run when it is started again, tasks already running while it is
+     * stopped run at the lowest thread priority, and everything is cancelled when the activity is
+     * destroyed. The executor is created on the first call, which must be on the main thread.
+     */
+    @NonNull
+    public LifecycleExecutor getLifecycleExecutor() {
+        if (mLifecycleExecutor == null) {
+            mLifecycleExecutor = new LifecycleExecutor(this);
+        }
+        return mLifecycleExecutor;
+    }
+
     /**
      * Returns the Lifecycle of the provider.
      *
@@ -320,6 +441,8 @@ public class FragmentActivity extends ComponentActivity implements
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         mFragments.attachHost(null /*parent*/);
+        getSupportFragmentManager().registerFragmentLifecycleCallbacks(
+                mFragmentLifecycleCallbacks, true /*recursive*/);
 
         super.onCreate(savedInstanceState);
 
@@ -328,31 +451,31 @@ public class FragmentActivity extends ComponentActivity implements
         if (nc != null && nc.viewModelStore != null && mViewModelStore == null) {
             mViewModelStore = nc.viewModelStore;
         }
+        if (nc != null && nc.retainedObjects != null && mRetainedObjects == null) {
+            mRetainedObjects = nc.retainedObjects;
+        }
+        if (nc != null && mViewModelSnapshotFile == null) {
+            // Chosen by the previous instance; this one overwrites it
+            mViewModelSnapshotFile = nc.viewModelSnapshotFile;
+        }
         if (savedInstanceState != null) {
+            if (mViewModelStore == null) {
+                // Recreated after process death: ViewModels read their saved state lazily
+                // when they are first requested from the new store.
+                mRestoredViewModelSnapshot = ViewModelSnapshot.restore(savedInstanceState);
+            }
             Parcelable p = savedInstanceState.getParcelable(FRAGMENTS_TAG);
             mFragments.restoreAllState(p, nc != null ? nc.fragments : null);
 
             // Check if there are any pending onActivityResult calls to descendent Fragments.
             if (savedInstanceState.containsKey(NEXT_CANDIDATE_REQUEST_INDEX_TAG)) {
-                mNextCandidateRequestIndex =
-                        savedInstanceState.getInt(NEXT_CANDIDATE_REQUEST_INDEX_TAG);
-                int[] requestCodes = savedInstanceState.getIntArray(ALLOCATED_REQUEST_INDICIES_TAG);
-                String[] fragmentWhos = savedInstanceState.getStringArray(REQUEST_FRAGMENT_WHO_TAG);
-                if (requestCodes == null || fragmentWhos == null ||
-                        requestCodes.length != fragmentWhos.length) {
-                    Log.w(TAG, "Invalid requestCode mapping in savedInstanceState.");
-                } else {
-                    mPendingFragmentActivityResults = new SparseArrayCompat<>(requestCodes.length);
-                    for (int i = 0; i < requestCodes.length; i++) {
-                        mPendingFragmentActivityResults.put(requestCodes[i], fragmentWhos[i]);
-                    }
-                }
+                restoreRequestIndices(savedInstanceState);
             }
         }
 
         if (mPendingFragmentActivityResults == null) {
             mPendingFragmentActivityResults = new SparseArrayCompat<>();
-            mNextCandidateRequestIndex = 0;
+            mRequestIndices.clear();
         }
 
         mFragments.dispatchCreate();
@@ -400,10 +523,22 @@ public class FragmentActivity extends ComponentActivity implements
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        mResumeScheduler.cancel();
+        if (mViewPreinflater != null) {
+            mViewPreinflater.clear();
+        }
 
         if (mViewModelStore != null && !isChangingConfigurations()) {
             mViewModelStore.clear();
         }
+        if (mRetainedObjects != null && !isChangingConfigurations()) {
+            mRetainedObjects.clear();
+        }
+        if (mViewModelSnapshotFile != null && !isChangingConfigurations()) {
+            //noinspection ResultOfMethodCallIgnored
+            mViewModelSnapshotFile.delete();
+            mViewModelSnapshotFile = null;
+        }
 
         mFragments.dispatchDestroy();
     }
@@ -415,6 +550,21 @@ public class FragmentActivity extends ComponentActivity implements
     public void onLowMemory() {
         super.onLowMemory();
         mFragments.dispatchLowMemory();
+        if (mViewModelStore instanceof BoundedViewModelStore) {
+            ((BoundedViewModelStore) mViewModelStore).trimMemory(
+                    ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+    }
+
+    /**
+     * Trim a {@link BoundedViewModelStore} progressively as the memory level rises.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (mViewModelStore instanceof BoundedViewModelStore) {
+            ((BoundedViewModelStore) mViewModelStore).trimMemory(level);
+        }
     }
 
     /**
@@ -458,8 +608,7 @@ public class FragmentActivity extends ComponentActivity implements
     protected void onPause() {
         super.onPause();
         mResumed = false;
-        if (mHandler.hasMessages(MSG_RESUME_PENDING)) {
-            mHandler.removeMessages(MSG_RESUME_PENDING);
+        if (mResumeScheduler.cancel()) {
             onResumeFragments();
         }
         mFragments.dispatchPause();
@@ -501,7 +650,7 @@ public class FragmentActivity extends ComponentActivity implements
     @Override
     protected void onResume() {
         super.onResume();
-        mHandler.sendEmptyMessage(MSG_RESUME_PENDING);
+        mResumeScheduler.schedule();
         mResumed = true;
         mFragments.execPendingActions();
     }
@@ -512,9 +661,7 @@ public class FragmentActivity extends ComponentActivity implements
     @Override
     protected void onPostResume() {
         super.onPostResume();
-        mHandler.removeMessages(MSG_RESUME_PENDING);
-        onResumeFragments();
-        mFragments.execPendingActions();
+        mResumeScheduler.runNow();
     }
 
     /**
@@ -560,7 +707,16 @@ public class FragmentActivity extends ComponentActivity implements
 
         FragmentManagerNonConfig fragments = mFragments.retainNestedNonConfig();
 
-        if (fragments == null && mViewModelStore == null && custom == null) {
+        RetainedObjectCache retainedObjects = mRetainedObjects;
+        if (retainedObjects != null) {
+            retainedObjects.trimToBudget();
+            if (retainedObjects.size() == 0) {
+                retainedObjects = null;
+            }
+        }
+
+        if (fragments == null && mViewModelStore == null && custom == null
+                && retainedObjects == null && mViewModelSnapshotFile == null) {
             return null;
         }
 
@@ -568,6 +724,8 @@ public class FragmentActivity extends ComponentActivity implements
         nci.custom = custom;
         nci.viewModelStore = mViewModelStore;
         nci.fragments = fragments;
+        nci.retainedObjects = retainedObjects;
+        nci.viewModelSnapshotFile = mViewModelSnapshotFile;
         return nci;
     }
 
@@ -583,8 +741,17 @@ public class FragmentActivity extends ComponentActivity implements
         if (p != null) {
             outState.putParcelable(FRAGMENTS_TAG, p);
         }
+        if (mViewModelStore != null) {
+            // ViewModels implementing ViewModelSnapshot.Savable survive process death; large
+            // snapshots are written to a memory-mapped file instead of the Bundle.
+            if (mViewModelSnapshotFile == null) {
+                mViewModelSnapshotFile = new File(getCacheDir(),
+                        "viewmodel-snapshot-" + UUID.randomUUID() + ".bin");
+            }
+            ViewModelSnapshot.save(mViewModelStore, outState, mViewModelSnapshotFile);
+        }
         if (mPendingFragmentActivityResults.size() > 0) {
-            outState.putInt(NEXT_CANDIDATE_REQUEST_INDEX_TAG, mNextCandidateRequestIndex);
+            outState.putInt(NEXT_CANDIDATE_REQUEST_INDEX_TAG, mRequestIndices.getNextCandidate());
 
             int[] requestCodes = new int[mPendingFragmentActivityResults.size()];
             String[] fragmentWhos = new String[mPendingFragmentActivityResults.size()];
@@ -639,6 +806,7 @@ public class FragmentActivity extends ComponentActivity implements
     /**
      * Use this instead of {@link #onRetainNonConfigurationInstance()}.
      * Retrieve later with {@link #getLastCustomNonConfigurationInstance()}.
+     * To retain several objects under a memory budget, use {@link #getRetainedObjects()}.
      */
     public Object onRetainCustomNonConfigurationInstance() {
         return null;
@@ -693,7 +861,39 @@ public class FragmentActivity extends ComponentActivity implements
         writer.print(" mResumed=");
         writer.print(mResumed);
         writer.print(" mStopped=");
-        writer.print(mStopped);
+        writer.println(mStopped);
+        if (mViewPreinflater != null) {
+            writer.print(innerPrefix);
+            writer.print("Preinflated fragment views: hits=");
+            writer.print(mViewPreinflater.getHits());
+            writer.print(" fallbacks=");
+            writer.print(mViewPreinflater.getFallbacks());
+            writer.print(" pending=");
+            writer.println(mViewPreinflater.getPendingCount());
+        }
+        if (mLifecycleExecutor != null) {
+            writer.print(innerPrefix);
+            writer.print("Lifecycle executor: queued=");
+            writer.print(mLifecycleExecutor.getQueuedTaskCount());
+            writer.print(" active=");
+            writer.print(mLifecycleExecutor.getActiveTaskCount());
+            writer.print(" deferred=");
+            writer.println(mLifecycleExecutor.getDeferredTaskCount());
+        }
+        if (mRetainedObjects != null) {
+            writer.print(innerPrefix);
+            writer.print("Retained objects: entries=");
+            writer.print(mRetainedObjects.size());
+            writer.print(" bytes=");
+            writer.print(mRetainedObjects.getSizeBytes());
+            writer.print("/");
+            writer.print(mRetainedObjects.getMaxSizeBytes());
+            writer.print(" evicted=");
+            writer.println(mRetainedObjects.getEvictionCount());
+        }
+        if (mViewModelStore != null) {
+            ViewModelMetrics.dump(innerPrefix, writer, mViewModelStore);
+        }
 
         if (getApplication() != null) {
             LoaderManager.getInstance(this).dump(innerPrefix, fd, writer, args);
@@ -733,6 +933,61 @@ public class FragmentActivity extends ComponentActivity implements
         return LoaderManager.getInstance(this);
     }
 
+    /**
+     * Starts inflating a fragment's view on a background thread, so it can be ready by the time
+     * the fragment is added. Call this before committing the transaction that adds the fragment
+     * to containerViewId, and create the fragment's view in
+     * {@link Fragment#onCreateView(LayoutInflater, ViewGroup, Bundle)} with
+     * {@link #inflateFragmentView(Fragment, LayoutInflater, int, ViewGroup)}.
+     *
+     * <p>The view is inflated without the fragment's or the activity's inflater factories, so
+     * the layout must not contain &lt;fragment&gt; tags and does not get widget substitution
+     * from an AppCompat theme. Views that cannot be created off the main thread make the
+     * inflation fail, and the fragment inflates its view synchronously as usual.</p>
+     *
+     * @return whether inflation was started
+     */
+    public boolean preinflateFragmentView(@NonNull Fragment fragment, @LayoutRes final int layoutId,
+                                          @IdRes int containerViewId) {
+        View container = findViewById(containerViewId);
+        if (!(container instanceof ViewGroup) || fragment.getView() != null) {
+            return false;
+        }
+        final ViewGroup parent = (ViewGroup) container;
+        if (mPreinflationInflater == null) {
+            mPreinflationInflater = new BasicInflater(this);
+        }
+        final LayoutInflater inflater = mPreinflationInflater;
+        if (mViewPreinflater == null) {
+            mViewPreinflater = new AsyncViewInflater<>(AsyncViewInflater.sharedExecutor(),
+                    PREINFLATE_MAX_WAIT_MILLIS);
+        }
+        return mViewPreinflater.submit(fragment.mWho, layoutId, new Callable<View>() {
+            @Override
+            public View call() {
+                // The parent only supplies layout params; the fragment manager adds the view.
+                return inflater.inflate(layoutId, parent, false);
+            }
+        });
+    }
+
+    /**
+     * Returns the view preinflated for the fragment by
+     * {@link #preinflateFragmentView(Fragment, int, int)}, or inflates layoutId with the given
+     * inflater if there is none or it is not ready.
+     */
+    @NonNull
+    public View inflateFragmentView(@NonNull Fragment fragment, @NonNull LayoutInflater inflater,
+                                    @LayoutRes int layoutId, @Nullable ViewGroup container) {
+        if (mViewPreinflater != null) {
+            View view = mViewPreinflater.take(fragment.mWho, layoutId);
+            if (view != null) {
+                return view;
+            }
+        }
+        return inflater.inflate(layoutId, container, false);
+    }
+
     /**
      * Modifies the standard behavior to allow results to be delivered to fragments.
      * This imposes a restriction that requestCode be <= 0xffff.
@@ -843,11 +1098,12 @@ public class FragmentActivity extends ComponentActivity implements
 
             String who = mPendingFragmentActivityResults.get(index);
             mPendingFragmentActivityResults.remove(index);
+            mRequestIndices.release(index);
             if (who == null) {
                 Log.w(TAG, "Activity result delivered for unknown Fragment.");
                 return;
             }
-            Fragment frag = mFragments.findFragmentByWho(who);
+            Fragment frag = findFragmentByWho(who);
             if (frag == null) {
                 Log.w(TAG, "Activity result no fragment exists for who: " + who);
             } else {
@@ -907,27 +1163,48 @@ public class FragmentActivity extends ComponentActivity implements
         }
     }
 
+    // Finds the target of a pending result. The index covers every attached fragment; the walk
+    // over all fragment managers is only a fallback.
+    @Nullable
+    private Fragment findFragmentByWho(String who) {
+        Fragment fragment = mFragmentsByWho.get(who);
+        return fragment != null ? fragment : mFragments.findFragmentByWho(who);
+    }
+
     // Allocates the next available startActivityForResult request index.
     private int allocateRequestIndex(Fragment fragment) {
-        // Sanity check that we havn't exhaused the request index space.
-        if (mPendingFragmentActivityResults.size() >= MAX_NUM_PENDING_FRAGMENT_ACTIVITY_RESULTS) {
-            throw new IllegalStateException("Too many pending Fragment activity results.");
-        }
-
-        // Find an unallocated request index in the mPendingFragmentActivityResults map.
-        while (mPendingFragmentActivityResults.indexOfKey(mNextCandidateRequestIndex) >= 0) {
-            mNextCandidateRequestIndex =
-                    (mNextCandidateRequestIndex + 1) % MAX_NUM_PENDING_FRAGMENT_ACTIVITY_RESULTS;
-        }
-
-        int requestIndex = mNextCandidateRequestIndex;
+        // Throws if we have exhausted the request index space.
+        int requestIndex = mRequestIndices.allocate();
         mPendingFragmentActivityResults.put(requestIndex, fragment.mWho);
-        mNextCandidateRequestIndex =
-                (mNextCandidateRequestIndex + 1) % MAX_NUM_PENDING_FRAGMENT_ACTIVITY_RESULTS;
-
         return requestIndex;
     }
 
+    // Rebuilds the pending request indices saved by onSaveInstanceState(...).
+    private void restoreRequestIndices(Bundle savedInstanceState) {
+        int[] requestCodes = savedInstanceState.getIntArray(ALLOCATED_REQUEST_INDICIES_TAG);
+        String[] fragmentWhos = savedInstanceState.getStringArray(REQUEST_FRAGMENT_WHO_TAG);
+        if (requestCodes == null || fragmentWhos == null ||
+                requestCodes.length != fragmentWhos.length) {
+            Log.w(TAG, "Invalid requestCode mapping in savedInstanceState.");
+            return;
+        }
+        mRequestIndices.clear();
+        mPendingFragmentActivityResults = new SparseArrayCompat<>(requestCodes.length);
+        for (int i = 0; i < requestCodes.length; i++) {
+            int requestIndex = requestCodes[i];
+            if (requestIndex < 0 || requestIndex >= MAX_NUM_PENDING_FRAGMENT_ACTIVITY_RESULTS) {
+                Log.w(TAG, "Invalid request index in savedInstanceState: " + requestIndex);
+                continue;
+            }
+            mRequestIndices.markAllocated(requestIndex);
+            mPendingFragmentActivityResults.put(requestIndex, fragmentWhos[i]);
+        }
+        int nextCandidate = savedInstanceState.getInt(NEXT_CANDIDATE_REQUEST_INDEX_TAG);
+        if (nextCandidate >= 0 && nextCandidate < MAX_NUM_PENDING_FRAGMENT_ACTIVITY_RESULTS) {
+            mRequestIndices.setNextCandidate(nextCandidate);
+        }
+    }
+
     /**
      * Called by Fragment.requestPermissions() to implement its behavior.
      */
@@ -965,6 +1242,8 @@ public class FragmentActivity extends ComponentActivity implements
 
         @Override
         public LayoutInflater onGetLayoutInflater() {
+            // Each fragment installs its child fragment manager as the factory of the inflater
+            // returned here, and an inflater accepts only one factory, so it can't be shared.
             return FragmentActivity.this.getLayoutInflater().cloneInContext(FragmentActivity.this);
         }
 
@@ -1040,29 +1319,125 @@ public class FragmentActivity extends ComponentActivity implements
     }
 
     private void markFragmentsCreated() {
-        boolean reiterate;
+        // Marking dispatches ON_STOP to lifecycle observers, which may commit transactions. A
+        // single pass reaches the fixed point unless one of them started a fragment, which
+        // mFragmentLifecycleCallbacks reports.
         do {
-            reiterate = markState(getSupportFragmentManager(), Lifecycle.State.CREATED);
-        } while (reiterate);
+            mFragmentStartedWhileMarking = false;
+            mMarkingFragments = true;
+            try {
+                mFragmentTreeMarker.mark(getSupportFragmentManager());
+            } finally {
+                mMarkingFragments = false;
+            }
+        } while (mFragmentStartedWhileMarking);
     }
 
-    private static boolean markState(FragmentManager manager, Lifecycle.State state) {
-        boolean hadNotMarked = false;
-        Collection<Fragment> fragments = manager.getFragments();
-        for (Fragment fragment : fragments) {
-            if (fragment == null) {
-                continue;
+    private static ResumeFragmentsScheduler.FrameClock createFrameClock() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return new ChoreographerFrameClock();
+        }
+        return new HandlerFrameClock();
+    }
+
+    @RequiresApi(Build.VERSION_CODES.JELLY_BEAN)
+    static final class ChoreographerFrameClock implements ResumeFragmentsScheduler.FrameClock,
+            Choreographer.FrameCallback {
+        private Runnable mCallback;
+
+        @Override
+        public void postFrameCallback(Runnable callback) {
+            mCallback = callback;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void removeFrameCallback(Runnable callback) {
+            if (mCallback == callback) {
+                mCallback = null;
+                Choreographer.getInstance().removeFrameCallback(this);
             }
-            if (fragment.getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED)) {
-                fragment.mLifecycleRegistry.markState(state);
-                hadNotMarked = true;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            Runnable callback = mCallback;
+            mCallback = null;
+            if (callback != null) {
+                callback.run();
             }
+        }
+    }
 
-            FragmentManager childFragmentManager = fragment.peekChildFragmentManager();
-            if (childFragmentManager != null) {
-                hadNotMarked |= markState(childFragmentManager, state);
+    // Before Choreographer there is no vsync signal; run on the next message instead.
+    static final class HandlerFrameClock implements ResumeFragmentsScheduler.FrameClock {
+        private final Handler mHandler = new Handler();
+
+        @Override
+        public void postFrameCallback(Runnable callback) {
+            mHandler.post(callback);
+        }
+
+        @Override
+        public void removeFrameCallback(Runnable callback) {
+            mHandler.removeCallbacks(callback);
+        }
+    }
+
+    // A layout inflater without factories, which are not safe to call off the main thread. Like
+    // PhoneLayoutInflater it looks framework widgets up by their short names.
+    static final class BasicInflater extends LayoutInflater {
+        private static final String[] sClassPrefixList = {
+                "android.widget.",
+                "android.webkit.",
+                "android.app."
+        };
+
+        BasicInflater(Context context) {
+            super(context);
+        }
+
+        @Override
+        public LayoutInflater cloneInContext(Context newContext) {
+            return new BasicInflater(newContext);
+        }
+
+        @Override
+        protected View onCreateView(String name, AttributeSet attrs) throws ClassNotFoundException {
+            for (String prefix : sClassPrefixList) {
+                try {
+                    View view = createView(name, prefix, attrs);
+                    if (view != null) {
+                        return view;
+                    }
+                } catch (ClassNotFoundException e) {
+                    // In this case we want to let the base class take a crack at it.
+                }
             }
+            return super.onCreateView(name, attrs);
         }
-        return hadNotMarked;
     }
+
+    private static final FragmentTreeMarker.Tree<FragmentManager, Fragment> FRAGMENT_TREE =
+            new FragmentTreeMarker.Tree<FragmentManager, Fragment>() {
+                @Override
+                public Collection<Fragment> getFragments(FragmentManager manager) {
+                    return manager.getFragments();
+                }
+
+                @Override
+                public FragmentManager getChildManager(Fragment fragment) {
+                    return fragment.peekChildFragmentManager();
+                }
+
+                @Override
+                public boolean markIfStarted(Fragment fragment) {
+                    if (fragment.getLifecycle().getCurrentState()
+                            .isAtLeast(Lifecycle.State.STARTED)) {
+                        fragment.mLifecycleRegistry.markState(Lifecycle.State.CREATED);
+                        return true;
+                    }
+                    return false;
+                }
+            };
 }
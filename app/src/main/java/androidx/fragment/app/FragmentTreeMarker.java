@@ -0,0 +1,86 @@
+package androidx.fragment.app;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Walks a fragment tree once, depth first, marking every fragment that is at least STARTED.
+ *
+ * <p>The walk uses an explicit stack instead of recursion, so deep child fragment hierarchies
+ * cannot overflow the thread stack, and the stack is reused between walks. Fragments are visited
+ * in the same order as the recursive walk it replaces. A child fragment manager is read only
+ * after its parent fragment has been marked, so fragments added by lifecycle observers of the
+ * parent are still visited in the same pass.</p>
+ *
+ * @param <M> the fragment manager type
+ * @param <F> the fragment type
+ */
+final class FragmentTreeMarker<M, F> {
+
+    /**
+     * Access to the tree being marked.
+     */
+    interface Tree<M, F> {
+        /**
+         * Returns a snapshot of the manager's fragments; entries may be null.
+         */
+        Collection<F> getFragments(M manager);
+
+        /**
+         * Returns the fragment's child manager, or null if it never created one.
+         */
+        M getChildManager(F fragment);
+
+        /**
+         * Marks the fragment if it is at least STARTED.
+         *
+         * @return whether the fragment was marked
+         */
+        boolean markIfStarted(F fragment);
+    }
+
+    private final Tree<M, F> mTree;
+    // One iterator per fragment manager on the current path from the root
+    private final ArrayList<Iterator<F>> mStack = new ArrayList<>();
+
+    FragmentTreeMarker(Tree<M, F> tree) {
+        mTree = tree;
+    }
+
+    /**
+     * Marks every started fragment reachable from root, visiting each fragment before its
+     * children and its children before its next sibling.
+     *
+     * @return the number of fragments marked
+     */
+    int mark(M root) {
+        int marked = 0;
+        ArrayList<Iterator<F>> stack = mStack;
+        stack.add(mTree.getFragments(root).iterator());
+        try {
+            while (!stack.isEmpty()) {
+                Iterator<F> fragments = stack.get(stack.size() - 1);
+                if (!fragments.hasNext()) {
+                    stack.remove(stack.size() - 1);
+                    continue;
+                }
+                F fragment = fragments.next();
+                if (fragment == null) {
+                    continue;
+                }
+                if (mTree.markIfStarted(fragment)) {
+                    marked++;
+                }
+                M childManager = mTree.getChildManager(fragment);
+                if (childManager != null) {
+                    stack.add(mTree.getFragments(childManager).iterator());
+                }
+            }
+        } finally {
+            // An observer threw; don't keep fragments of this tree alive.
+            stack.clear();
+        }
+        return marked;
+    }
+}
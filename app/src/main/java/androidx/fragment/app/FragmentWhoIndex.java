@@ -0,0 +1,39 @@
+package androidx.fragment.app;
+
+import java.util.HashMap;
+
+/**
+ * Maps a fragment's unique "who" identifier to the attached fragment, so activity results and
+ * permission results can be dispatched without walking every fragment manager.
+ *
+ * <p>Entries are added when a fragment is attached and removed when it is detached. The index
+ * holds no state of its own across process death: fragments keep their "who" when they are
+ * restored and are indexed again as they re-attach.</p>
+ *
+ * @param <F> the fragment type
+ */
+final class FragmentWhoIndex<F> {
+    private final HashMap<String, F> mFragments = new HashMap<>();
+
+    void add(String who, F fragment) {
+        mFragments.put(who, fragment);
+    }
+
+    /**
+     * Removes the entry for who only if it still maps to fragment, so a detach that arrives after
+     * a new fragment with the same who was attached does not drop the new one.
+     */
+    void remove(String who, F fragment) {
+        if (mFragments.get(who) == fragment) {
+            mFragments.remove(who);
+        }
+    }
+
+    F get(String who) {
+        return mFragments.get(who);
+    }
+
+    int size() {
+        return mFragments.size();
+    }
+}
@@ -0,0 +1,162 @@
+package androidx.fragment.app;
+
+/**
+ * Allocates the request indices that FragmentActivity encodes into the upper 16 bits of request
+ * codes for Fragment.startActivityForResult(...) and Fragment.requestPermissions(...).
+ *
+ * <p>Indices are handed out round-robin starting at a candidate hint, like the original probing
+ * in allocateRequestIndex(...), so a just-released index is not reused right away. Allocated
+ * indices are tracked in a bitmap with a second-level bitmap of full words, so finding the next
+ * free index touches a bounded number of words no matter how many requests are outstanding or
+ * how they cluster. The bitmap is only allocated on first use.</p>
+ */
+final class RequestIndexAllocator {
+    private final int mCapacity;
+    private int mNextCandidate;
+    private int mSize;
+    // Bit i set if index i is allocated. Bits past mCapacity in the last word are always set.
+    private long[] mWords;
+    // Bit w set if mWords[w] has no free bits. Bits for words past the end are always set.
+    private long[] mFullWords;
+
+    RequestIndexAllocator(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        mCapacity = capacity;
+    }
+
+    /**
+     * Allocates the first free index at or after the candidate hint, wrapping around.
+     *
+     * @throws IllegalStateException if all indices are allocated
+     */
+    int allocate() {
+        if (mSize >= mCapacity) {
+            throw new IllegalStateException("Too many pending Fragment activity results.");
+        }
+        ensureWords();
+        int index = findFree(mNextCandidate);
+        if (index < 0) {
+            index = findFree(0);
+        }
+        set(index);
+        mNextCandidate = (index + 1) % mCapacity;
+        return index;
+    }
+
+    /**
+     * Marks a specific index as allocated, used when restoring saved state.
+     *
+     * @return false if the index was already allocated
+     */
+    boolean markAllocated(int index) {
+        checkIndex(index);
+        ensureWords();
+        if (isAllocated(index)) {
+            return false;
+        }
+        set(index);
+        return true;
+    }
+
+    /**
+     * @return false if the index was not allocated
+     */
+    boolean release(int index) {
+        if (index < 0 || index >= mCapacity || !isAllocated(index)) {
+            return false;
+        }
+        int word = index >>> 6;
+        mWords[word] &= ~(1L << index);
+        mFullWords[word >>> 6] &= ~(1L << word);
+        mSize--;
+        return true;
+    }
+
+    boolean isAllocated(int index) {
+        return mWords != null && index >= 0 && index < mCapacity
+                && (mWords[index >>> 6] & (1L << index)) != 0;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    int getNextCandidate() {
+        return mNextCandidate;
+    }
+
+    void setNextCandidate(int nextCandidate) {
+        checkIndex(nextCandidate);
+        mNextCandidate = nextCandidate;
+    }
+
+    /**
+     * Releases every index and resets the candidate hint.
+     */
+    void clear() {
+        mWords = null;
+        mFullWords = null;
+        mSize = 0;
+        mNextCandidate = 0;
+    }
+
+    private void set(int index) {
+        int word = index >>> 6;
+        long bits = mWords[word] | (1L << index);
+        mWords[word] = bits;
+        if (bits == -1L) {
+            mFullWords[word >>> 6] |= 1L << word;
+        }
+        mSize++;
+    }
+
+    // Returns the first free index at or after from, or -1 if there is none before the end.
+    private int findFree(int from) {
+        int word = from >>> 6;
+        long free = ~mWords[word] & (-1L << from);
+        if (free != 0) {
+            return (word << 6) + Long.numberOfTrailingZeros(free);
+        }
+        word++;
+        int group = word >>> 6;
+        if (group >= mFullWords.length) {
+            return -1;
+        }
+        long notFull = ~mFullWords[group] & (-1L << word);
+        while (notFull == 0) {
+            if (++group >= mFullWords.length) {
+                return -1;
+            }
+            notFull = ~mFullWords[group];
+        }
+        word = (group << 6) + Long.numberOfTrailingZeros(notFull);
+        return (word << 6) + Long.numberOfTrailingZeros(~mWords[word]);
+    }
+
+    private void ensureWords() {
+        if (mWords != null) {
+            return;
+        }
+        int words = (mCapacity + 63) >>> 6;
+        mWords = new long[words];
+        int tail = mCapacity & 63;
+        if (tail != 0) {
+            mWords[words - 1] = -1L << tail;
+        }
+        int groups = (words + 63) >>> 6;
+        mFullWords = new long[groups];
+        int groupTail = words & 63;
+        if (groupTail != 0) {
+            mFullWords[groups - 1] = -1L << groupTail;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mCapacity) {
+            throw new IllegalArgumentException("Request index " + index + " out of range [0, "
+                    + mCapacity + ")");
+        }
+    }
+}
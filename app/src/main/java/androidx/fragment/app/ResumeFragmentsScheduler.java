@@ -0,0 +1,87 @@
+package androidx.fragment.app;
+
+/**
+ * Runs FragmentActivity's deferred resume of its fragments, followed by a flush of pending
+ * transactions, on the next frame rather than on the next handler message.
+ *
+ * <p>Only the deferred resume goes through here; the synchronous flushes in onStart and
+ * onResume still call the fragment manager directly, since their ordering relative to the
+ * lifecycle dispatch matters.</p>
+ */
+final class ResumeFragmentsScheduler {
+
+    interface Host {
+        void resumeFragments();
+
+        void execPendingActions();
+    }
+
+    /**
+     * Runs callbacks aligned to the display's frames.
+     */
+    interface FrameClock {
+        void postFrameCallback(Runnable callback);
+
+        void removeFrameCallback(Runnable callback);
+    }
+
+    private final Host mHost;
+    private final FrameClock mFrameClock;
+    private boolean mScheduled;
+
+    private final Runnable mFrameCallback = new Runnable() {
+        @Override
+        public void run() {
+            if (mScheduled) {
+                mScheduled = false;
+                perform();
+            }
+        }
+    };
+
+    ResumeFragmentsScheduler(Host host, FrameClock frameClock) {
+        mHost = host;
+        mFrameClock = frameClock;
+    }
+
+    /**
+     * Resumes fragments on the next frame unless that is already scheduled.
+     */
+    void schedule() {
+        if (!mScheduled) {
+            mScheduled = true;
+            mFrameClock.postFrameCallback(mFrameCallback);
+        }
+    }
+
+    /**
+     * Resumes fragments now, dropping the scheduled resume if there is one.
+     */
+    void runNow() {
+        cancel();
+        perform();
+    }
+
+    /**
+     * Drops the scheduled resume without running it.
+     *
+     * @return whether a resume was scheduled
+     */
+    boolean cancel() {
+        if (!mScheduled) {
+            return false;
+        }
+        mScheduled = false;
+        mFrameClock.removeFrameCallback(mFrameCallback);
+        return true;
+    }
+
+    boolean isScheduled() {
+        return mScheduled;
+    }
+
+    private void perform() {
+        mHost.resumeFragments();
+        mHost.execPendingActions();
+    }
+}
@@ -0,0 +1,250 @@
+package androidx.fragment.app;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A keyed, typed cache of objects retained across configuration changes, returned by
+ * {@link FragmentActivity#getRetainedObjects()}.
+ *
+ * <p>It is meant for expensive objects that are not ViewModels, such as decoded bitmaps,
+ * compiled patterns or parsed templates, so a recreated activity picks them up instead of
+ * rebuilding them. Values must not reference the activity, its views or its fragments.</p>
+ *
+ * <p>Every entry comes with a {@link SizeEstimator}. When the activity is about to be recreated
+ * all entries are measured again; entries larger than the whole budget are evicted, then the
+ * least recently used ones until the total fits. Evicted values that are {@link Closeable} are
+ * closed, and so is everything left when the activity finishes for good.</p>
+ *
+ * <p>Like the ViewModelStore, the cache must only be used on the main thread.</p>
+ */
+public final class RetainedObjectCache {
+
+    /**
+     * Estimates how much memory a value keeps alive.
+     *
+     * @param <T> the value type
+     */
+    public interface SizeEstimator<T> {
+        /**
+         * @return the approximate number of bytes retained by value, never negative
+         */
+        long estimateSize(@NonNull T value);
+    }
+
+    /**
+     * Identifies an entry by name and value type. Keys with the same name and type are equal.
+     *
+     * @param <T> the value type
+     */
+    public static final class Key<T> {
+        final String mName;
+        final Class<T> mType;
+
+        private Key(String name, Class<T> type) {
+            mName = name;
+            mType = type;
+        }
+
+        @NonNull
+        public static <T> Key<T> of(@NonNull String name, @NonNull Class<T> type) {
+            //noinspection ConstantConditions
+            if (name == null || type == null) {
+                throw new NullPointerException("name and type must not be null");
+            }
+            return new Key<>(name, type);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key<?> key = (Key<?>) o;
+            return mName.equals(key.mName) && mType == key.mType;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mName.hashCode() + mType.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "Key{" + mName + ", " + mType.getName() + "}";
+        }
+    }
+
+    // Access ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<Key<?>, Entry<?>> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long mMaxSizeBytes;
+    private long mSizeBytes;
+    private int mEvictionCount;
+
+    /**
+     * @param maxSizeBytes the most memory the retained entries may keep alive together
+     */
+    public RetainedObjectCache(long maxSizeBytes) {
+        if (maxSizeBytes < 0) {
+            throw new IllegalArgumentException("maxSizeBytes < 0");
+        }
+        mMaxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Adds or replaces the entry for key. The budget is only enforced when the activity is
+     * recreated, so an entry can be used for as long as the activity lives.
+     *
+     * @return the value previously stored under key, which is not closed
+     */
+    @Nullable
+    public <T> T put(@NonNull Key<T> key, @NonNull T value,
+                     @NonNull SizeEstimator<? super T> estimator) {
+        Entry<T> entry = new Entry<T>(key.mType.cast(value), estimator);
+        entry.measure(key);
+        mSizeBytes += entry.mSizeBytes;
+        Entry<?> old = mEntries.put(key, entry);
+        if (old == null) {
+            return null;
+        }
+        mSizeBytes -= old.mSizeBytes;
+        return key.mType.cast(old.mValue);
+    }
+
+    /**
+     * @return the value stored under key, or null if there is none
+     */
+    @Nullable
+    public <T> T get(@NonNull Key<T> key) {
+        Entry<?> entry = mEntries.get(key);
+        return entry != null ? key.mType.cast(entry.mValue) : null;
+    }
+
+    /**
+     * Removes the entry for key.
+     *
+     * @return the removed value, which is not closed
+     */
+    @Nullable
+    public <T> T remove(@NonNull Key<T> key) {
+        Entry<?> entry = mEntries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        mSizeBytes -= entry.mSizeBytes;
+        return key.mType.cast(entry.mValue);
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * The total size of all entries, as estimated when they were added or last measured.
+     */
+    public long getSizeBytes() {
+        return mSizeBytes;
+    }
+
+    public long getMaxSizeBytes() {
+        return mMaxSizeBytes;
+    }
+
+    /**
+     * Number of entries evicted for being over budget.
+     */
+    public int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * Removes all entries, closing the values that are {@link Closeable}.
+     */
+    public void clear() {
+        Object[] values = new Object[mEntries.size()];
+        int i = 0;
+        for (Entry<?> entry : mEntries.values()) {
+            values[i++] = entry.mValue;
+        }
+        mEntries.clear();
+        mSizeBytes = 0;
+        for (Object value : values) {
+            closeWithRuntimeException(value);
+        }
+    }
+
+    /**
+     * Measures every entry again and evicts entries until the total fits the budget: first those
+     * that are larger than the budget by themselves, then the least recently used.
+     */
+    void trimToBudget() {
+        long size = 0;
+        for (Map.Entry<Key<?>, Entry<?>> mapEntry : mEntries.entrySet()) {
+            Entry<?> entry = mapEntry.getValue();
+            entry.measure(mapEntry.getKey());
+            size += entry.mSizeBytes;
+        }
+        mSizeBytes = size;
+        if (mSizeBytes <= mMaxSizeBytes) {
+            return;
+        }
+        Iterator<Entry<?>> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry<?> entry = iterator.next();
+            if (entry.mSizeBytes > mMaxSizeBytes) {
+                iterator.remove();
+                evicted(entry);
+            }
+        }
+        iterator = mEntries.values().iterator();
+        while (mSizeBytes > mMaxSizeBytes && iterator.hasNext()) {
+            Entry<?> entry = iterator.next();
+            iterator.remove();
+            evicted(entry);
+        }
+    }
+
+    private void evicted(Entry<?> entry) {
+        mSizeBytes -= entry.mSizeBytes;
+        mEvictionCount++;
+        closeWithRuntimeException(entry.mValue);
+    }
+
+    private static void closeWithRuntimeException(Object obj) {
+        if (obj instanceof Closeable) {
+            try {
+                ((Closeable) obj).close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static final class Entry<T> {
+        final T mValue;
+        final SizeEstimator<? super T> mEstimator;
+        long mSizeBytes;
+
+        Entry(T value, SizeEstimator<? super T> estimator) {
+            mValue = value;
+            mEstimator = estimator;
+        }
+
+        void measure(Key<?> key) {
+            long size = mEstimator.estimateSize(mValue);
+            if (size < 0) {
+                throw new IllegalStateException("Negative size for " + key);
+            }
+            mSizeBytes = size;
+        }
+    }
+}
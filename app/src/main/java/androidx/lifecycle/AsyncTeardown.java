@@ -0,0 +1,167 @@
+package androidx.lifecycle;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ViewModelStore 的异步销毁模式：{@link ViewModel#onCleared()} 仍然在主线程调用，
+ * 但 tag 中的 Closeable（数据库游标、本地 socket、线程池等）放到后台线程关闭，避免在 onDestroy 中卡顿。
+ * <p>
+ * 通过 {@link ViewModelStore#setAsyncTeardown(AsyncTeardown)} 开启。
+ * 关闭失败、耗时超过阈值、或者超时还没有关闭完成的 Closeable 都会通过 {@link Reporter} 回调，
+ * 回调发生在后台线程。超时只会报告，不会中断正在执行的 close()。
+ */
+public final class AsyncTeardown {
+
+    static final long DEFAULT_SLOW_MILLIS = 50;
+    static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * 接收后台关闭的结果，在后台线程回调。
+     */
+    public interface Reporter {
+        /**
+         * close() 抛出了异常。
+         */
+        void onCloseFailed(@NonNull Closeable closeable, @NonNull Throwable error);
+
+        /**
+         * close() 成功了，但耗时超过了阈值。
+         */
+        void onCloseSlow(@NonNull Closeable closeable, long durationMillis);
+
+        /**
+         * 超时后 close() 还没有返回。
+         */
+        void onCloseTimeout(@NonNull Closeable closeable, long timeoutMillis);
+    }
+
+    private static Executor sDefaultExecutor;
+    private static ScheduledExecutorService sWatchdog;
+
+    private final Executor mExecutor;
+    private final long mSlowMillis;
+    private final long mTimeoutMillis;
+    private final Reporter mReporter;
+
+    /**
+     * 使用默认的后台线程池、{@value #DEFAULT_SLOW_MILLIS}ms 慢关闭阈值和 {@value #DEFAULT_TIMEOUT_MILLIS}ms 超时。
+     */
+    public AsyncTeardown(@NonNull Reporter reporter) {
+        this(getDefaultExecutor(), DEFAULT_SLOW_MILLIS, DEFAULT_TIMEOUT_MILLIS, reporter);
+    }
+
+    /**
+     * @param executor      执行 close() 的线程池
+     * @param slowMillis    close() 耗时超过这个值会回调 {@link Reporter#onCloseSlow}
+     * @param timeoutMillis 超过这个时间还没有关闭完成会回调 {@link Reporter#onCloseTimeout}
+     */
+    public AsyncTeardown(@NonNull Executor executor, long slowMillis, long timeoutMillis,
+                         @NonNull Reporter reporter) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("timeoutMillis <= 0");
+        }
+        mExecutor = executor;
+        mSlowMillis = slowMillis;
+        mTimeoutMillis = timeoutMillis;
+        mReporter = reporter;
+    }
+
+    void close(@NonNull List<Object> closeables) {
+        final CloseTask[] tasks = new CloseTask[closeables.size()];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new CloseTask((Closeable) closeables.get(i));
+            try {
+                mExecutor.execute(tasks[i]);
+            } catch (RejectedExecutionException e) {
+                // 线程池已经关闭，只能在当前线程关闭
+                tasks[i].run();
+            }
+        }
+        getWatchdog().schedule(new Runnable() {
+            @Override
+            public void run() {
+                for (CloseTask task : tasks) {
+                    if (!task.mDone) {
+                        mReporter.onCloseTimeout(task.mCloseable, mTimeoutMillis);
+                    }
+                }
+            }
+        }, mTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private final class CloseTask implements Runnable {
+        final Closeable mCloseable;
+        volatile boolean mDone;
+
+        CloseTask(Closeable closeable) {
+            mCloseable = closeable;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                mCloseable.close();
+            } catch (Throwable t) {
+                mDone = true;
+                mReporter.onCloseFailed(mCloseable, t);
+                return;
+            }
+            mDone = true;
+            long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (durationMillis >= mSlowMillis) {
+                mReporter.onCloseSlow(mCloseable, durationMillis);
+            }
+        }
+    }
+
+    @NonNull
+    static synchronized Executor getDefaultExecutor() {
+        if (sDefaultExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("ViewModel-teardown"));
+            executor.allowCoreThreadTimeOut(true);
+            sDefaultExecutor = executor;
+        }
+        return sDefaultExecutor;
+    }
+
+    private static synchronized ScheduledExecutorService getWatchdog() {
+        if (sWatchdog == null) {
+            ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1,
+                    new NamedThreadFactory("ViewModel-teardown-watchdog"));
+            watchdog.setKeepAliveTime(30, TimeUnit.SECONDS);
+            watchdog.allowCoreThreadTimeOut(true);
+            sWatchdog = watchdog;
+        }
+        return sWatchdog;
+    }
+
+    static final class NamedThreadFactory implements ThreadFactory {
+        private final String mName;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            Thread thread = new Thread(r, mName + "-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package androidx.lifecycle;
+
+import android.content.ComponentCallbacks2;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 有容量上限的 ViewModelStore，超过上限时按最近最少使用（LRU）淘汰，被淘汰的 ViewModel 会调用
+ * {@link ViewModel#clear()}，tag 中的 Closeable 也会被关闭。
+ * <p>
+ * 只有通过 {@link ViewModelProvider#get(String, Class)} 用自定义 key 存入的 ViewModel 会被淘汰，
+ * {@link ViewModelProvider#get(Class)} 使用默认 key 存入的 ViewModel 一般是当前页面正在使用的，始终保留。
+ * 加入 {@link SharedViewModelScopes} 的参与关系也始终保留。
+ * <p>
+ * 容量默认按条目数计算，也可以传入 {@link Weigher} 按权重计算。
+ * {@link #trimMemory(int)} 根据 onTrimMemory 的级别逐步缩小到容量的 3/4、1/2、1/4 直至全部淘汰。
+ * <p>
+ * 和 ViewModelStore 一样只能在主线程使用。
+ */
+public class BoundedViewModelStore extends ViewModelStore {
+
+    /**
+     * 计算一个 ViewModel 占用的权重，同一个 ViewModel 多次调用应该返回相同的值。
+     */
+    public interface Weigher {
+        int weigh(@NonNull String key, @NonNull ViewModel viewModel);
+    }
+
+    private static final Weigher ENTRY_WEIGHER = new Weigher() {
+        @Override
+        public int weigh(@NonNull String key, @NonNull ViewModel viewModel) {
+            return 1;
+        }
+    };
+
+    private final LinkedHashMap<String, ViewModel> mMap = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> mKeys = Collections.unmodifiableSet(mMap.keySet());
+    private final Weigher mWeigher;
+    private final int mMaxWeight;
+    private int mWeight;
+    private int mEvictionCount;
+
+    /**
+     * @param maxEntries 最多保留的条目数
+     */
+    public BoundedViewModelStore(int maxEntries) {
+        this(maxEntries, ENTRY_WEIGHER);
+    }
+
+    /**
+     * @param maxWeight 所有条目权重之和的上限
+     * @param weigher   计算每个条目的权重
+     */
+    public BoundedViewModelStore(int maxWeight, @NonNull Weigher weigher) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight <= 0");
+        }
+        mMaxWeight = maxWeight;
+        mWeigher = weigher;
+    }
+
+    @Override
+    void put(String key, ViewModel viewModel) {
+        ViewModel oldViewModel = mMap.put(key, viewModel);
+        mWeight += weigh(key, viewModel);
+        if (oldViewModel != null) {
+            mWeight -= weigh(key, oldViewModel);
+            oldViewModel.onCleared();
+            ViewModelLeakTracker.watch(key, oldViewModel);
+        }
+        trimToWeight(mMaxWeight, key);
+    }
+
+    @Override
+    ViewModel get(String key) {
+        // accessOrder 的 LinkedHashMap，get 会把条目移到最近使用的位置
+        return mMap.get(key);
+    }
+
+    @Override
+    Set<String> keys() {
+        return mKeys;
+    }
+
+    @Override
+    int size() {
+        return mMap.size();
+    }
+
+    /**
+     * 当前所有条目的权重之和。
+     */
+    public int getWeight() {
+        return mWeight;
+    }
+
+    public int getMaxWeight() {
+        return mMaxWeight;
+    }
+
+    /**
+     * 因为超出容量或 trimMemory 被淘汰的条目数。
+     */
+    public int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * 根据 {@link ComponentCallbacks2} 的级别淘汰条目，级别越高淘汰越多。
+     */
+    public void trimMemory(int level) {
+        int target;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            target = 0;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            target = mMaxWeight / 4;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            // RUNNING_LOW、UI_HIDDEN、BACKGROUND
+            target = mMaxWeight / 2;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            target = mMaxWeight * 3 / 4;
+        } else {
+            return;
+        }
+        trimToWeight(target, null);
+    }
+
+    @Override
+    public void clear() {
+        long start = ViewModelMetrics.startTiming();
+        int size = mMap.size();
+        cancelPendingCreations();
+        List<Object> deferred = beginClear();
+        for (Map.Entry<String, ViewModel> entry : mMap.entrySet()) {
+            entry.getValue().clear(deferred);
+            ViewModelLeakTracker.watch(entry.getKey(), entry.getValue());
+        }
+        mMap.clear();
+        mWeight = 0;
+        endClear(deferred);
+        ViewModelMetrics.recordClear(start, size);
+    }
+
+    /**
+     * 从最久未使用的开始淘汰，直到权重不超过 target，keep 对应的条目（刚放入的）不淘汰。
+     */
+    private void trimToWeight(int target, String keep) {
+        List<Object> deferred = null;
+        Iterator<Map.Entry<String, ViewModel>> iterator = mMap.entrySet().iterator();
+        while (mWeight > target && iterator.hasNext()) {
+            Map.Entry<String, ViewModel> entry = iterator.next();
+            String key = entry.getKey();
+            ViewModel viewModel = entry.getValue();
+            // 共享作用域的参与关系被淘汰会提前退出作用域
+            if (key.equals(keep) || ViewModelProvider.isDefaultKey(key)
+                    || viewModel instanceof SharedViewModelScopes.Membership) {
+                continue;
+            }
+            iterator.remove();
+            mWeight -= weigh(key, viewModel);
+            mEvictionCount++;
+            if (deferred == null) {
+                deferred = beginClear();
+            }
+            viewModel.clear(deferred);
+            ViewModelLeakTracker.watch(key, viewModel);
+        }
+        endClear(deferred);
+    }
+
+    private int weigh(String key, ViewModel viewModel) {
+        int weight = mWeigher.weigh(key, viewModel);
+        if (weight < 0) {
+            throw new IllegalStateException("Negative weight for " + key);
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,163 @@
+package androidx.lifecycle;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 线程安全的 ViewModelStore，后台线程可以通过 {@link ViewModelProvider#getConcurrent(String, Class)} 获取或创建 ViewModel。
+ * <p>
+ * 读不加锁；同一个 key 只有一个线程调用 Factory，其他线程等待它的结果，所以并发获取同一个 key 只会创建一个 ViewModel。
+ * {@link #clear()} 可以和 get 并发执行，每个 ViewModel 都只会被 clear 一次：
+ * 如果 clear 时某个 key 正在创建，创建完成后由创建的线程负责 clear，调用方拿到的是已经 clear 过的 ViewModel。
+ * <p>
+ * 在 FragmentActivity 中重写 {@code onCreateViewModelStore()} 返回这个类即可开启。
+ */
+public class ConcurrentViewModelStore extends ViewModelStore {
+
+    // value 是 ViewModel 或者正在创建的 Creation
+    private final ConcurrentHashMap<String, Object> mMap = new ConcurrentHashMap<>();
+    private final Set<String> mKeys = Collections.unmodifiableSet(mMap.keySet());
+
+    private static final class Creation {
+        final Thread mOwner = Thread.currentThread();
+        final CountDownLatch mDone = new CountDownLatch(1);
+        // 创建失败时为 null
+        volatile ViewModel mResult;
+
+        ViewModel await(String key) {
+            if (mOwner == Thread.currentThread()) {
+                throw new IllegalStateException("Recursive creation of ViewModel for key " + key);
+            }
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    mDone.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return mResult;
+        }
+
+        void complete(ViewModel result) {
+            mResult = result;
+            mDone.countDown();
+        }
+    }
+
+    @Override
+    void put(String key, ViewModel viewModel) {
+        Object old = mMap.put(key, viewModel);
+        if (old instanceof ViewModel) {
+            ((ViewModel) old).onCleared();
+            ViewModelLeakTracker.watch(key, (ViewModel) old);
+        }
+    }
+
+    @Override
+    ViewModel get(String key) {
+        Object value = mMap.get(key);
+        return value instanceof ViewModel ? (ViewModel) value : null;
+    }
+
+    /**
+     * 包含正在创建中的 key。
+     */
+    @Override
+    Set<String> keys() {
+        return mKeys;
+    }
+
+    @Override
+    int size() {
+        return mMap.size();
+    }
+
+    @NonNull
+    <T extends ViewModel> T getOrCreate(@NonNull String key, @NonNull Class<T> modelClass,
+                                        @NonNull ViewModelProvider.Factory factory) {
+        while (true) {
+            Object current = mMap.get(key);
+            if (modelClass.isInstance(current)) {
+                ViewModelMetrics.recordHit(modelClass);
+                //noinspection unchecked
+                return (T) current;
+            }
+            if (current instanceof Creation) {
+                ViewModel result = ((Creation) current).await(key);
+                if (modelClass.isInstance(result)) {
+                    //noinspection unchecked
+                    return (T) result;
+                }
+                // 创建失败或者类型不同，重新来一次
+                continue;
+            }
+            Creation creation = new Creation();
+            boolean owner = current == null
+                    ? mMap.putIfAbsent(key, creation) == null
+                    : mMap.replace(key, current, creation);
+            if (!owner) {
+                continue;
+            }
+            T viewModel;
+            try {
+                viewModel = ViewModelProvider.create(this, factory, key, modelClass);
+            } catch (RuntimeException | Error e) {
+                if (current == null) {
+                    mMap.remove(key, creation);
+                } else if (!mMap.replace(key, creation, current)) {
+                    // 被替换的旧 ViewModel 放不回去（创建期间被 clear 或被 put 覆盖），由我们负责清理
+                    ((ViewModel) current).onCleared();
+                    ViewModelLeakTracker.watch(key, (ViewModel) current);
+                }
+                creation.complete(null);
+                throw e;
+            }
+            creation.complete(viewModel);
+            if (!mMap.replace(key, creation, viewModel)) {
+                // 创建期间被 clear 或被 put 覆盖，这个 ViewModel 没有进入 store，由我们负责清理
+                viewModel.clear();
+                ViewModelLeakTracker.watch(key, viewModel);
+            }
+            if (current != null) {
+                // 与 ViewModelStore.put 覆盖旧值时的行为一致
+                ((ViewModel) current).onCleared();
+                ViewModelLeakTracker.watch(key, (ViewModel) current);
+            }
+            return viewModel;
+        }
+    }
+
+    /**
+     * 只在 key 对应的仍然是 viewModel 时移除。
+     */
+    boolean remove(@NonNull String key, @NonNull ViewModel viewModel) {
+        return mMap.remove(key, viewModel);
+    }
+
+    @Override
+    public void clear() {
+        long start = ViewModelMetrics.startTiming();
+        int size = mMap.size();
+        cancelPendingCreations();
+        List<Object> deferred = beginClear();
+        for (String key : mMap.keySet()) {
+            Object value = mMap.remove(key);
+            if (value instanceof ViewModel) {
+                ((ViewModel) value).clear(deferred);
+                ViewModelLeakTracker.watch(key, (ViewModel) value);
+            }
+        }
+        endClear(deferred);
+        ViewModelMetrics.recordClear(start, size);
+    }
+}
@@ -0,0 +1,19 @@
+package androidx.lifecycle;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记一个 ViewModel 或 AndroidViewModel 子类，让注解处理器在编译期为它生成直接调用构造函数的工厂。
+ * <p>
+ * 生成的类名为 {@code 类名_ViewModelFactory}，与 ViewModel 在同一个包下，
+ * 默认的 NewInstanceFactory / AndroidViewModelFactory 找到它之后就不再走反射创建。
+ * <p>
+ * ViewModel 需要有 public 的空构造函数，AndroidViewModel 需要有 public 的 (Application) 构造函数。
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GenerateViewModelFactory {
+}
@@ -0,0 +1,49 @@
+package androidx.lifecycle;
+
+import androidx.annotation.Nullable;
+
+/**
+ * 查找注解处理器为 {@link GenerateViewModelFactory} 生成的工厂。
+ */
+final class GeneratedFactories {
+
+    private static final String FACTORY_SUFFIX = "_ViewModelFactory";
+
+    private GeneratedFactories() {
+    }
+
+    /**
+     * 用反射查找 modelClass 对应的生成工厂，没有生成过则返回 null。
+     * 结果由 {@link ViewModelCreators} 按 class 缓存，这里不再缓存。
+     */
+    @Nullable
+    static ViewModelProvider.GeneratedFactory find(Class<?> modelClass) {
+        Package aPackage = modelClass.getPackage();
+        String canonicalName = modelClass.getCanonicalName();
+        if (canonicalName == null) {
+            return null;
+        }
+        String packageName = aPackage != null ? aPackage.getName() : "";
+        String factoryName = getFactoryName(packageName.isEmpty() ? canonicalName
+                : canonicalName.substring(packageName.length() + 1));
+        if (!packageName.isEmpty()) {
+            factoryName = packageName + "." + factoryName;
+        }
+        try {
+            Class<?> factoryClass = Class.forName(factoryName, true, modelClass.getClassLoader());
+            return (ViewModelProvider.GeneratedFactory)
+                    factoryClass.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            throw new RuntimeException("Cannot create generated factory " + factoryName, e);
+        }
+    }
+
+    /**
+     * 生成类的简单名，嵌套类的 "." 替换为 "_"，与注解处理器保持一致。
+     */
+    static String getFactoryName(String className) {
+        return className.replace(".", "_") + FACTORY_SUFFIX;
+    }
+}
@@ -0,0 +1,287 @@
+package androidx.lifecycle;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 跟随 {@link LifecycleOwner} 生命周期的后台任务执行器，页面不可见时不和前台应用抢 CPU 和 I/O。
+ * <ul>
+ * <li>owner 处于 STARTED 之前或 onStop 之后提交的任务先排队，onStart 时按提交顺序交给线程池；</li>
+ * <li>onStop 时正在运行的任务所在线程降到最低优先级，onStart 或任务结束时恢复；</li>
+ * <li>onDestroy 时取消排队的任务，中断正在运行的任务，之后提交的任务直接返回已取消的 Future。</li>
+ * </ul>
+ * 默认和 {@link ViewModelTaskScope} 共用线程池。
+ * <pre>
+ * LifecycleExecutor executor = new LifecycleExecutor(this);
+ * executor.execute(new Runnable() { ... });
+ * </pre>
+ * 构造方法需要在主线程调用，提交任务可以在任意线程。
+ */
+public final class LifecycleExecutor implements Executor, Closeable {
+
+    private static final int STOPPED = 0;
+    private static final int STARTED = 1;
+    private static final int DESTROYED = 2;
+
+    private final Executor mExecutor;
+    private final Object mLock = new Object();
+    // 以下字段都由 mLock 保护
+    private int mState = STOPPED;
+    // owner 停止期间提交、等待 onStart 的任务
+    private final ArrayDeque<Task<?>> mQueue = new ArrayDeque<>();
+    // 已经交给线程池、还没有结束的任务
+    private final Set<Task<?>> mTasks = new HashSet<>();
+    private int mDeferredCount;
+
+    private final LifecycleEventObserver mObserver = new LifecycleEventObserver() {
+        @Override
+        public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+            if (event == Lifecycle.Event.ON_START) {
+                start();
+            } else if (event == Lifecycle.Event.ON_STOP) {
+                stop();
+            } else if (event == Lifecycle.Event.ON_DESTROY) {
+                source.getLifecycle().removeObserver(this);
+                close();
+            }
+        }
+    };
+
+    public LifecycleExecutor(@NonNull LifecycleOwner owner) {
+        this(owner, ViewModelTaskScope.getSharedExecutor());
+    }
+
+    /**
+     * @param executor 实际执行任务的线程池
+     */
+    public LifecycleExecutor(@NonNull LifecycleOwner owner, @NonNull Executor executor) {
+        this(executor);
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            close();
+        } else {
+            // 已经 STARTED 时 addObserver 会立即补发 ON_START
+            lifecycle.addObserver(mObserver);
+        }
+    }
+
+    LifecycleExecutor(@NonNull Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * 等同于 {@link #launch(Runnable)}，owner 销毁后提交的任务被丢弃，不会抛出异常。
+     */
+    @Override
+    public void execute(@NonNull Runnable command) {
+        launch(command);
+    }
+
+    @NonNull
+    public Future<?> launch(@NonNull Runnable runnable) {
+        return submit(new Task<>(runnable, null));
+    }
+
+    @NonNull
+    public <T> Future<T> submit(@NonNull Callable<T> callable) {
+        return submit(new Task<>(callable));
+    }
+
+    private <T> Future<T> submit(Task<T> task) {
+        synchronized (mLock) {
+            if (mState == DESTROYED) {
+                task.cancel(false);
+                return task;
+            }
+            if (mState == STOPPED) {
+                mQueue.add(task);
+                mDeferredCount++;
+                return task;
+            }
+            mTasks.add(task);
+        }
+        try {
+            mExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            synchronized (mLock) {
+                mTasks.remove(task);
+            }
+            throw e;
+        }
+        return task;
+    }
+
+    /**
+     * owner 进入 STARTED：恢复正在运行的任务的优先级，把排队的任务交给线程池。
+     */
+    void start() {
+        List<Task<?>> queued;
+        synchronized (mLock) {
+            if (mState != STOPPED) {
+                return;
+            }
+            mState = STARTED;
+            for (Task<?> task : mTasks) {
+                task.restorePriority();
+            }
+            queued = new ArrayList<>(mQueue);
+            mQueue.clear();
+            mTasks.addAll(queued);
+        }
+        for (Task<?> task : queued) {
+            try {
+                mExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // 提交时已经返回了 Future，这里只能通过取消通知调用方
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * owner 停止：之后提交的任务排队，正在运行的任务降低优先级。
+     */
+    void stop() {
+        synchronized (mLock) {
+            if (mState != STARTED) {
+                return;
+            }
+            mState = STOPPED;
+            for (Task<?> task : mTasks) {
+                task.lowerPriority();
+            }
+        }
+    }
+
+    /**
+     * 取消排队的任务，中断正在运行的任务。owner 销毁时自动调用。
+     */
+    @Override
+    public void close() {
+        List<Task<?>> queued;
+        List<Task<?>> running;
+        synchronized (mLock) {
+            if (mState == DESTROYED) {
+                return;
+            }
+            mState = DESTROYED;
+            queued = new ArrayList<>(mQueue);
+            mQueue.clear();
+            running = new ArrayList<>(mTasks);
+        }
+        // cancel 会回调 done()，不能在遍历 mTasks 时调用
+        for (Task<?> task : queued) {
+            task.cancel(false);
+        }
+        for (Task<?> task : running) {
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * 等待 owner 启动的任务数（队列深度）。
+     */
+    public int getQueuedTaskCount() {
+        synchronized (mLock) {
+            return mQueue.size();
+        }
+    }
+
+    /**
+     * 已经交给线程池、还没有结束的任务数。
+     */
+    public int getActiveTaskCount() {
+        synchronized (mLock) {
+            return mTasks.size();
+        }
+    }
+
+    /**
+     * 累计因为 owner 停止而排队的任务数。
+     */
+    public int getDeferredTaskCount() {
+        synchronized (mLock) {
+            return mDeferredCount;
+        }
+    }
+
+    public boolean isStarted() {
+        synchronized (mLock) {
+            return mState == STARTED;
+        }
+    }
+
+    public boolean isClosed() {
+        synchronized (mLock) {
+            return mState == DESTROYED;
+        }
+    }
+
+    private final class Task<T> extends FutureTask<T> {
+        // 以下字段由 mLock 保护；mThread 只在任务运行期间不为 null
+        private Thread mThread;
+        private int mPriority;
+
+        Task(Callable<T> callable) {
+            super(callable);
+        }
+
+        Task(Runnable runnable, T result) {
+            super(runnable, result);
+        }
+
+        @Override
+        public void run() {
+            Thread thread = Thread.currentThread();
+            int priority = thread.getPriority();
+            synchronized (mLock) {
+                mThread = thread;
+                mPriority = priority;
+                if (mState == STOPPED) {
+                    lowerPriority();
+                }
+            }
+            try {
+                super.run();
+            } finally {
+                synchronized (mLock) {
+                    mThread = null;
+                }
+                // 线程池的线程还会运行其他任务，恢复原来的优先级
+                thread.setPriority(priority);
+            }
+        }
+
+        void lowerPriority() {
+            if (mThread != null) {
+                mThread.setPriority(Thread.MIN_PRIORITY);
+            }
+        }
+
+        void restorePriority() {
+            if (mThread != null) {
+                mThread.setPriority(mPriority);
+            }
+        }
+
+        @Override
+        protected void done() {
+            synchronized (mLock) {
+                mTasks.remove(this);
+                // 排队期间被调用方取消
+                mQueue.remove(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package androidx.lifecycle;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link ViewModelProvider#getAsync(String, Class)} 返回的结果：ViewModel 在后台线程通过 Factory 创建，
+ * 然后在主线程放入 ViewModelStore，构造函数里解析 assets、打开数据库等耗时操作不会阻塞 onCreate。
+ * <p>
+ * 同一个 store 中同一个 key 同时只会有一次后台创建，重复调用 getAsync 返回同一个对象。
+ * 创建完成前 store 被 clear（owner 已经销毁）时，这次创建被取消，创建出来的 ViewModel 直接 clear，不会泄漏。
+ * <p>
+ * 结果在主线程放入 store，所以不要在主线程调用 {@link #get()} 等待，应该使用 {@link #addCallback(Callback)}。
+ */
+public final class PendingViewModel<T extends ViewModel> implements Future<T> {
+
+    /**
+     * 在主线程回调。
+     */
+    public interface Callback<T extends ViewModel> {
+        void onViewModelReady(@NonNull T viewModel);
+
+        /**
+         * Factory 抛出了异常，或者创建完成前 store 已经被 clear（此时 error 是 CancellationException）。
+         */
+        void onViewModelFailed(@NonNull Throwable error);
+    }
+
+    // 执行创建的线程池和回到主线程的 Executor，测试时可以替换
+    static Executor sBackgroundExecutor;
+    static Executor sMainThreadExecutor;
+
+    private final ViewModelStore mStore;
+    private final ViewModelProvider.Factory mFactory;
+    private final String mKey;
+    private final Class<T> mModelClass;
+    private final CountDownLatch mDone = new CountDownLatch(1);
+    // 以下字段由 this 保护
+    private T mResult;
+    private Throwable mError;
+    private boolean mCancelled;
+    private List<Callback<? super T>> mCallbacks;
+
+    private PendingViewModel(ViewModelStore store, ViewModelProvider.Factory factory, String key,
+                             Class<T> modelClass) {
+        mStore = store;
+        mFactory = factory;
+        mKey = key;
+        mModelClass = modelClass;
+    }
+
+    @NonNull
+    @MainThread
+    static <T extends ViewModel> PendingViewModel<T> obtain(@NonNull ViewModelStore store,
+                                                            @NonNull ViewModelProvider.Factory factory,
+                                                            @NonNull String key,
+                                                            @NonNull Class<T> modelClass) {
+        PendingViewModel<T> pending;
+        ViewModel existing = store.get(key);
+        if (modelClass.isInstance(existing)) {
+            pending = new PendingViewModel<>(store, factory, key, modelClass);
+            //noinspection unchecked
+            pending.complete((T) existing, null, false);
+            return pending;
+        }
+        synchronized (store) {
+            PendingViewModel<?> current = store.getPendingCreation(key);
+            if (current != null && current.mModelClass == modelClass) {
+                //noinspection unchecked
+                return (PendingViewModel<T>) current;
+            }
+            // 类型不同时和 get 一样由新的 ViewModel 取代，旧的创建完成后会被 clear
+            pending = new PendingViewModel<>(store, factory, key, modelClass);
+            store.putPendingCreation(key, pending);
+        }
+        getBackgroundExecutor().execute(pending.mCreateRunnable);
+        return pending;
+    }
+
+    private final Runnable mCreateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (isCancelled()) {
+                return;
+            }
+            final T viewModel;
+            try {
+                if (mStore instanceof ConcurrentViewModelStore) {
+                    viewModel = ((ConcurrentViewModelStore) mStore).getOrCreate(mKey, mModelClass,
+                            mFactory);
+                } else {
+                    viewModel = ViewModelProvider.create(mStore, mFactory, mKey, mModelClass);
+                }
+            } catch (final Throwable t) {
+                getMainThreadExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mStore.removePendingCreation(mKey, PendingViewModel.this);
+                        complete(null, t, false);
+                    }
+                });
+                return;
+            }
+            getMainThreadExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    publish(viewModel);
+                }
+            });
+        }
+    };
+
+    @MainThread
+    private void publish(T viewModel) {
+        boolean current = mStore.removePendingCreation(mKey, this);
+        if (mStore instanceof ConcurrentViewModelStore) {
+            // getOrCreate 已经放入了 store；创建期间 store 被 clear 的话它已经 clear 了这个 ViewModel
+            if (!current) {
+                if (((ConcurrentViewModelStore) mStore).remove(mKey, viewModel)) {
+                    viewModel.clear();
+                }
+                complete(null, null, true);
+                return;
+            }
+            complete(viewModel, null, false);
+            return;
+        }
+        if (!current) {
+            viewModel.clear();
+            complete(null, null, true);
+            return;
+        }
+        ViewModel existing = mStore.get(mKey);
+        if (mModelClass.isInstance(existing)) {
+            // 创建期间主线程已经用 get 同步创建过了，以 store 里的为准
+            viewModel.clear();
+            //noinspection unchecked
+            complete((T) existing, null, false);
+            return;
+        }
+        mStore.put(mKey, viewModel);
+        complete(viewModel, null, false);
+    }
+
+    void cancelCreation() {
+        complete(null, null, true);
+    }
+
+    private void complete(T result, Throwable error, boolean cancelled) {
+        final List<Callback<? super T>> callbacks;
+        synchronized (this) {
+            if (mDone.getCount() == 0) {
+                return;
+            }
+            mResult = result;
+            mError = error;
+            mCancelled = cancelled;
+            callbacks = mCallbacks;
+            mCallbacks = null;
+            mDone.countDown();
+        }
+        if (callbacks != null) {
+            for (Callback<? super T> callback : callbacks) {
+                dispatch(callback);
+            }
+        }
+    }
+
+    /**
+     * 添加完成回调，在主线程调用；已经完成时也会在下一次主线程循环中回调。
+     */
+    public void addCallback(@NonNull Callback<? super T> callback) {
+        synchronized (this) {
+            if (mDone.getCount() != 0) {
+                if (mCallbacks == null) {
+                    mCallbacks = new ArrayList<>(2);
+                }
+                mCallbacks.add(callback);
+                return;
+            }
+        }
+        dispatch(callback);
+    }
+
+    private void dispatch(final Callback<? super T> callback) {
+        getMainThreadExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                T result;
+                Throwable error;
+                synchronized (PendingViewModel.this) {
+                    result = mResult;
+                    error = mCancelled ? new CancellationException("ViewModelStore was cleared")
+                            : mError;
+                }
+                if (error != null) {
+                    callback.onViewModelFailed(error);
+                } else {
+                    callback.onViewModelReady(result);
+                }
+            }
+        });
+    }
+
+    /**
+     * 创建可能被多个调用方共享，不能单独取消，总是返回 false。
+     * store 被 clear 时创建会被取消，之后 {@link #isCancelled()} 返回 true。
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mCancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return mDone.getCount() == 0;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        mDone.await();
+        return getResult();
+    }
+
+    @Override
+    public T get(long timeout, @NonNull TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!mDone.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getResult();
+    }
+
+    private synchronized T getResult() throws ExecutionException {
+        if (mCancelled) {
+            throw new CancellationException("ViewModelStore was cleared");
+        }
+        if (mError != null) {
+            throw new ExecutionException(mError);
+        }
+        return mResult;
+    }
+
+    @NonNull
+    static synchronized Executor getBackgroundExecutor() {
+        if (sBackgroundExecutor == null) {
+            sBackgroundExecutor = ViewModelTaskScope.getSharedExecutor();
+        }
+        return sBackgroundExecutor;
+    }
+
+    @NonNull
+    static synchronized Executor getMainThreadExecutor() {
+        if (sMainThreadExecutor == null) {
+            final Handler handler = new Handler(Looper.getMainLooper());
+            sMainThreadExecutor = new Executor() {
+                @Override
+                public void execute(@NonNull Runnable command) {
+                    handler.post(command);
+                }
+            };
+        }
+        return sMainThreadExecutor;
+    }
+}
@@ -0,0 +1,107 @@
+package androidx.lifecycle;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+
+/**
+ * 跨多个 Activity / Fragment 共享的命名 ViewModel 作用域。
+ * <p>
+ * 同一个流程的多个页面用同样的名字加入作用域，拿到的是同一个应用级的 {@link ViewModelStoreOwner}，
+ * 从里面获取的 ViewModel 只加载一次数据。作用域按参与者计数，最后一个参与者结束时才 clear 它的 ViewModelStore。
+ * <p>
+ * 参与关系记录在参与者自己的 ViewModelStore 中，所以旋转屏幕重新创建的 Activity 再次加入时不会重复计数，
+ * 只有参与者真正销毁（它的 ViewModelStore 被 clear）时才会退出。
+ * <pre>
+ * ViewModelProviders.ofSharedScope(this, "checkout").get(CartViewModel.class);
+ * </pre>
+ */
+public final class SharedViewModelScopes {
+
+    private static final String KEY_PREFIX = "androidx.lifecycle.SharedViewModelScopes:";
+
+    // 由 SharedViewModelScopes.class 保护
+    private static final HashMap<String, Scope> sScopes = new HashMap<>();
+
+    private SharedViewModelScopes() {
+    }
+
+    private static final class Scope implements ViewModelStoreOwner {
+        final String mName;
+        final ViewModelStore mViewModelStore = new ViewModelStore();
+        int mParticipants;
+
+        Scope(String name) {
+            mName = name;
+        }
+
+        @NonNull
+        @Override
+        public ViewModelStore getViewModelStore() {
+            return mViewModelStore;
+        }
+    }
+
+    /**
+     * 存放在参与者的 ViewModelStore 中，参与者销毁时 onCleared 退出作用域。
+     */
+    static final class Membership extends ViewModel {
+        final Scope mScope;
+
+        Membership(Scope scope) {
+            mScope = scope;
+        }
+
+        @Override
+        protected void onCleared() {
+            release(mScope);
+        }
+    }
+
+    /**
+     * participant 加入名为 name 的作用域，返回作用域的 ViewModelStoreOwner。同一个参与者重复加入只计数一次。
+     */
+    @NonNull
+    public static ViewModelStoreOwner join(@NonNull ViewModelStoreOwner participant,
+                                           @NonNull String name) {
+        ViewModelStore store = participant.getViewModelStore();
+        String key = KEY_PREFIX + name;
+        ViewModel membership = store.get(key);
+        if (membership instanceof Membership) {
+            return ((Membership) membership).mScope;
+        }
+        Scope scope = acquire(name);
+        store.put(key, new Membership(scope));
+        return scope;
+    }
+
+    /**
+     * 作用域当前的参与者数量，作用域不存在时返回 0。
+     */
+    public static synchronized int getParticipantCount(@NonNull String name) {
+        Scope scope = sScopes.get(name);
+        return scope != null ? scope.mParticipants : 0;
+    }
+
+    private static synchronized Scope acquire(String name) {
+        Scope scope = sScopes.get(name);
+        if (scope == null) {
+            scope = new Scope(name);
+            sScopes.put(name, scope);
+        }
+        scope.mParticipants++;
+        return scope;
+    }
+
+    private static void release(Scope scope) {
+        synchronized (SharedViewModelScopes.class) {
+            if (--scope.mParticipants > 0) {
+                return;
+            }
+            if (sScopes.get(scope.mName) == scope) {
+                sScopes.remove(scope.mName);
+            }
+        }
+        scope.mViewModelStore.clear();
+    }
+}
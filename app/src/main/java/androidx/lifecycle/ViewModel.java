@@ -5,7 +5,9 @@ import androidx.annotation.Nullable;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  viewModel是一个类，负责为 activity 活动或 fragment 准备和管理数据。
@@ -83,10 +85,31 @@ import java.util.concurrent.ConcurrentHashMap;
  * </>
  */
 public abstract class ViewModel {
+    // 超过这个数量的 tag 才换成 ConcurrentHashMap
+    static final int MAX_TAG_NODES = 8;
+
+    private static final AtomicReferenceFieldUpdater<ViewModel, Object> BAG_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(ViewModel.class, Object.class, "mBagOfTags");
+
+    // 大多数 ViewModel 不会用到 tag，所以第一次 setTagIfAbsent 时才分配：
+    // null 表示没有 tag；TagNode 是不可变的单链表，用 CAS 替换表头；
+    // 超过 MAX_TAG_NODES 个换成 ConcurrentHashMap
     @Nullable
-    private final ConcurrentHashMap<String, Object> mBagOfTags = new ConcurrentHashMap<>();
+    private volatile Object mBagOfTags;
     private volatile boolean mCleared = false;
 
+    private static final class TagNode {
+        final String mKey;
+        final Object mValue;
+        final TagNode mNext;
+
+        TagNode(String key, Object value, TagNode next) {
+            mKey = key;
+            mValue = value;
+            mNext = next;
+        }
+    }
+
     /**
      * This method will be called when this ViewModel is no longer used and will be destroyed.
      * 当不再使用此 ViewModel 时，将调用此方法并将其销毁。
@@ -101,6 +124,15 @@ public abstract class ViewModel {
 
     @MainThread
     final void clear() {
+        clear(null);
+    }
+
+    /**
+     * @param deferredCloseables 不为 null 时，tag 中的 Closeable 不在这里关闭，而是放进这个列表，
+     *                           由 {@link AsyncTeardown} 在后台线程关闭；onCleared() 仍然在当前线程调用
+     */
+    @MainThread
+    final void clear(@Nullable List<Object> deferredCloseables) {
         mCleared = true;
         // Since clear() is final, this method is still called on mock objects
         // and in those cases, mBagOfTags is null. It'll always be empty though
@@ -108,15 +140,35 @@ public abstract class ViewModel {
         // clearing it
         // 由于clear（）是final，所以仍然对模拟对象调用此方法，在这些情况下，mBagOfTags 为空。
         // 但它总是空的，因为 setTagIfAbsent 和 getTag 不是最终版本，所以我们可以跳过清除它。
-        if (mBagOfTags != null) {
-            for (Object value : mBagOfTags.values()) {
-                // see comment for the similar call in setTagIfAbsent 请参阅 setTagIfAbsent 中类似调用的注释
-                closeWithRuntimeException(value);
+        Object bag = mBagOfTags;
+        if (bag instanceof ConcurrentHashMap) {
+            for (Object value : ((ConcurrentHashMap<?, ?>) bag).values()) {
+                closeTag(value, deferredCloseables);
+            }
+        } else {
+            for (TagNode node = (TagNode) bag; node != null; node = node.mNext) {
+                closeTag(node.mValue, deferredCloseables);
             }
         }
         onCleared();
     }
 
+    /**
+     * 是否已经被 clear，{@link ViewModelLazy} 用来发现缓存的实例已经失效。
+     */
+    final boolean isCleared() {
+        return mCleared;
+    }
+
+    private static void closeTag(Object value, @Nullable List<Object> deferredCloseables) {
+        if (deferredCloseables != null && value instanceof Closeable) {
+            deferredCloseables.add(value);
+        } else {
+            // see comment for the similar call in setTagIfAbsent 请参阅 setTagIfAbsent 中类似调用的注释
+            closeWithRuntimeException(value);
+        }
+    }
+
     /**
      * 设置与此ViewModel关联的标记和键。
      * 如果给定的 newValue 是 Closeable，它将关闭一次 clear（）。
@@ -126,9 +178,8 @@ public abstract class ViewModel {
      * 如果 viewModel 已经清除，那么如果返回的对象实现了 Closeable，则会对该对象调用 close（）。同一对象可能会收到多个关闭调用，因此方法应该是等幂的。
      */
     <T> T setTagIfAbsent(String key, T newValue) {
-        assert mBagOfTags != null;
         @SuppressWarnings("unchecked")
-        T previous = (T) mBagOfTags.putIfAbsent(key, newValue);
+        T previous = (T) putTagIfAbsent(key, newValue);
         T result = previous == null ? newValue : previous;
         if (mCleared) {
             // It is possible that we'll call close() multiple times on the same object, but
@@ -146,8 +197,52 @@ public abstract class ViewModel {
      */
     @SuppressWarnings("TypeParameterUnusedInFormals")
     <T> T getTag(String key) {
-        //noinspection unchecked
-        return (T) mBagOfTags.get(key);
+        Object bag = mBagOfTags;
+        if (bag instanceof ConcurrentHashMap) {
+            //noinspection unchecked
+            return (T) ((ConcurrentHashMap<?, ?>) bag).get(key);
+        }
+        for (TagNode node = (TagNode) bag; node != null; node = node.mNext) {
+            if (node.mKey.equals(key)) {
+                //noinspection unchecked
+                return (T) node.mValue;
+            }
+        }
+        return null;
+    }
+
+    // 与 ConcurrentHashMap.putIfAbsent 语义相同：已有值时返回旧值，否则放入并返回 null
+    private Object putTagIfAbsent(String key, Object newValue) {
+        while (true) {
+            Object bag = mBagOfTags;
+            if (bag instanceof ConcurrentHashMap) {
+                @SuppressWarnings("unchecked")
+                ConcurrentHashMap<String, Object> map = (ConcurrentHashMap<String, Object>) bag;
+                return map.putIfAbsent(key, newValue);
+            }
+            TagNode head = (TagNode) bag;
+            int count = 0;
+            for (TagNode node = head; node != null; node = node.mNext) {
+                if (node.mKey.equals(key)) {
+                    return node.mValue;
+                }
+                count++;
+            }
+            Object update;
+            if (count < MAX_TAG_NODES) {
+                update = new TagNode(key, newValue, head);
+            } else {
+                ConcurrentHashMap<String, Object> map = new ConcurrentHashMap<>();
+                for (TagNode node = head; node != null; node = node.mNext) {
+                    map.put(node.mKey, node.mValue);
+                }
+                map.put(key, newValue);
+                update = map;
+            }
+            if (BAG_UPDATER.compareAndSet(this, bag, update)) {
+                return null;
+            }
+        }
     }
 
     // 我们可能会在同一个对象上多次调用close（），但 Closeable 接口要求 close 方法为等幂：“如果流已经关闭，则调用此方法无效。”
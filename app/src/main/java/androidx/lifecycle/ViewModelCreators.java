@@ -0,0 +1,129 @@
+package androidx.lifecycle;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * 按 class 缓存 ViewModel 的创建方式，默认工厂每次未命中时不再重复
+ * isAssignableFrom / getConstructor / Class.forName。
+ * <p>
+ * 缓存的 key 是弱引用（见 {@link WeakClassMap}），生成工厂和 Constructor 都会强引用 ViewModel 的 class，
+ * 所以用软引用保存，内存紧张时被回收后下次再重新解析。
+ */
+final class ViewModelCreators {
+
+    // 编译期生成的工厂
+    static final int KIND_GENERATED = 0;
+    // 空构造函数
+    static final int KIND_NO_ARG = 1;
+    // (Application) 构造函数
+    static final int KIND_APPLICATION_ARG = 2;
+
+    static final class Creator {
+        final int mKind;
+        // 是否是 AndroidViewModel，也缓存起来，命中时不用再 isAssignableFrom
+        final boolean mNeedsApplication;
+        private final SoftReference<Object> mTarget;
+
+        Creator(int kind, boolean needsApplication, Object target) {
+            mKind = kind;
+            mNeedsApplication = needsApplication;
+            mTarget = new SoftReference<>(target);
+        }
+    }
+
+    private static final WeakClassMap<Creator> sCreators = new WeakClassMap<>();
+
+    private ViewModelCreators() {
+    }
+
+    /**
+     * 创建 modelClass 的实例。
+     *
+     * @param application 为 null 时表示 NewInstanceFactory，只能创建有空构造函数或生成工厂的 ViewModel
+     */
+    @NonNull
+    static <T extends ViewModel> T create(@NonNull Class<T> modelClass,
+                                          @Nullable Application application) {
+        Creator creator = sCreators.get(modelClass);
+        Object target = creator != null ? creator.mTarget.get() : null;
+        while (target == null) {
+            creator = resolve(modelClass);
+            target = creator.mTarget.get();
+        }
+        if (creator.mNeedsApplication && application == null) {
+            // NewInstanceFactory 创建 AndroidViewModel，保持原来的行为
+            return newInstance(modelClass);
+        }
+        switch (creator.mKind) {
+            case KIND_GENERATED:
+                return ((ViewModelProvider.GeneratedFactory) target).create(application, modelClass);
+            case KIND_APPLICATION_ARG:
+                return newInstance(modelClass, target, application);
+            default:
+                return newInstance(modelClass, target);
+        }
+    }
+
+    /**
+     * 返回 modelClass 缓存的创建方式，没有解析过返回 -1。
+     */
+    static int getKind(@NonNull Class<?> modelClass) {
+        Creator creator = sCreators.get(modelClass);
+        return creator != null ? creator.mKind : -1;
+    }
+
+    private static Creator resolve(Class<?> modelClass) {
+        boolean needsApplication = AndroidViewModel.class.isAssignableFrom(modelClass);
+        Creator creator;
+        Object generated = GeneratedFactories.find(modelClass);
+        if (generated != null) {
+            creator = new Creator(KIND_GENERATED, needsApplication, generated);
+        } else {
+            try {
+                if (needsApplication) {
+                    creator = new Creator(KIND_APPLICATION_ARG, true,
+                            modelClass.getConstructor(Application.class));
+                } else {
+                    creator = new Creator(KIND_NO_ARG, false, modelClass.getDeclaredConstructor());
+                }
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException("Cannot create an instance of " + modelClass, e);
+            }
+        }
+        sCreators.put(modelClass, creator);
+        return creator;
+    }
+
+    @SuppressWarnings("ClassNewInstance")
+    private static <T> T newInstance(Class<T> modelClass) {
+        //noinspection TryWithIdenticalCatches
+        try {
+            return modelClass.newInstance();
+        } catch (InstantiationException e) {
+            throw new RuntimeException("Cannot create an instance of " + modelClass, e);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Cannot create an instance of " + modelClass, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newInstance(Class<T> modelClass, Object constructor, Object... args) {
+        //noinspection TryWithIdenticalCatches
+        try {
+            return ((Constructor<T>) constructor).newInstance(args);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Cannot create an instance of " + modelClass, e);
+        } catch (InstantiationException e) {
+            throw new RuntimeException("Cannot create an instance of " + modelClass, e);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException("Cannot create an instance of " + modelClass, e);
+        }
+    }
+}
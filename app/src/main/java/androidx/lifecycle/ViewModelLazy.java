@@ -0,0 +1,73 @@
+package androidx.lifecycle;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * {@link ViewModelProvider#lazy(Class)} 返回的延迟句柄：创建时不计算 key、不访问 store，
+ * 第一次 {@link #get()} 时才通过 ViewModelProvider 获取或创建 ViewModel，之后直接返回同一个实例。
+ * 缓存的实例被 clear 之后（store 被 clear，或者被 {@link BoundedViewModelStore} 淘汰），下次获取时重新解析。
+ * 句柄只对创建它的 ViewModelProvider 的 store 有效，不要让它比 store 活得更久。
+ * <p>
+ * 只在 tab、对话框里才用到的 ViewModel 可以在 onCreate 中先拿句柄，不占用启动时间。
+ * 句柄本身是线程安全的，多个线程同时第一次获取时只会解析一次。{@link #get()} 和
+ * {@link ViewModelProvider#get(String, Class)} 一样只能在主线程调用；store 是 {@link ConcurrentViewModelStore} 时，
+ * 后台线程使用 {@link #getConcurrent()}。
+ */
+public final class ViewModelLazy<T extends ViewModel> {
+
+    private final ViewModelProvider mProvider;
+    // 为 null 时使用默认 key，第一次 get 时才拼接
+    private final String mKey;
+    private final Class<T> mModelClass;
+    private volatile T mValue;
+
+    ViewModelLazy(@NonNull ViewModelProvider provider, @Nullable String key,
+                  @NonNull Class<T> modelClass) {
+        mProvider = provider;
+        mKey = key;
+        mModelClass = modelClass;
+    }
+
+    @NonNull
+    @MainThread
+    public T get() {
+        return resolve(false);
+    }
+
+    /**
+     * 线程安全版本，通过 {@link ViewModelProvider#getConcurrent(String, Class)} 解析。
+     */
+    @NonNull
+    @AnyThread
+    public T getConcurrent() {
+        return resolve(true);
+    }
+
+    private T resolve(boolean concurrent) {
+        T value = mValue;
+        if (value != null && !value.isCleared()) {
+            return value;
+        }
+        synchronized (this) {
+            value = mValue;
+            if (value == null || value.isCleared()) {
+                String key = mKey != null ? mKey : ViewModelProvider.getDefaultKey(mModelClass);
+                value = concurrent ? mProvider.getConcurrent(key, mModelClass)
+                        : mProvider.get(key, mModelClass);
+                mValue = value;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * 是否已经解析过，并且解析出的实例还没有被 clear。
+     */
+    public boolean isInitialized() {
+        T value = mValue;
+        return value != null && !value.isCleared();
+    }
+}
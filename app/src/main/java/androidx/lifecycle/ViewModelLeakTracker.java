@@ -0,0 +1,243 @@
+package androidx.lifecycle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 检查已经 clear 的 ViewModel 是否还被引用（被回调、静态字段等持有）。
+ * <p>
+ * 安装后，ViewModelStore 在 clear 或替换、淘汰 ViewModel 时用弱引用登记它和它在 store 中的 key。
+ * 宽限期过后在后台线程检查，还没有被回收的先触发一次 GC，仍然存活的通过 {@link Reporter} 报告，每个实例只报告一次。
+ * <p>
+ * 没有安装时 clear 只多读一个 volatile 字段；安装后每个被 clear 的 ViewModel 多一个弱引用，
+ * 只有存在疑似泄漏时才会触发 GC，可以在内部发布的 release 包中一直开着。
+ */
+public final class ViewModelLeakTracker {
+
+    static final long DEFAULT_GRACE_PERIOD_MILLIS = 5000;
+    // 触发 GC 后等待引用入队的时间
+    private static final long GC_WAIT_MILLIS = 100;
+
+    /**
+     * 在后台线程回调。
+     */
+    public interface Reporter {
+        /**
+         * @param key            ViewModel 被 clear 时在 store 中的 key
+         * @param className      ViewModel 的类名
+         * @param retainedMillis 从 clear 到现在经过的时间
+         */
+        void onViewModelRetained(@NonNull String key, @NonNull String className,
+                                 long retainedMillis);
+    }
+
+    private static volatile ViewModelLeakTracker sInstance;
+
+    private final long mGracePeriodNanos;
+    private final Reporter mReporter;
+    // 为 null 时不自动检查，由调用方调用 check
+    private final ScheduledExecutorService mExecutor;
+    private final ReferenceQueue<ViewModel> mQueue = new ReferenceQueue<>();
+    // 持有弱引用本身，否则弱引用会先于 ViewModel 被回收
+    private final Set<Watched> mWatched =
+            Collections.newSetFromMap(new ConcurrentHashMap<Watched, Boolean>());
+    private final AtomicBoolean mCheckScheduled = new AtomicBoolean();
+    private volatile int mReportedCount;
+
+    ViewModelLeakTracker(long gracePeriodMillis, @NonNull Reporter reporter,
+                         @Nullable ScheduledExecutorService executor) {
+        if (gracePeriodMillis < 0) {
+            throw new IllegalArgumentException("gracePeriodMillis < 0");
+        }
+        mGracePeriodNanos = TimeUnit.MILLISECONDS.toNanos(gracePeriodMillis);
+        mReporter = reporter;
+        mExecutor = executor;
+    }
+
+    /**
+     * 使用 {@value #DEFAULT_GRACE_PERIOD_MILLIS}ms 宽限期安装。
+     */
+    public static void install(@NonNull Reporter reporter) {
+        install(DEFAULT_GRACE_PERIOD_MILLIS, reporter);
+    }
+
+    /**
+     * 开始跟踪之后被 clear 的 ViewModel，已经安装时替换原来的。
+     *
+     * @param gracePeriodMillis clear 之后超过这个时间还没有被回收才算泄漏
+     */
+    public static synchronized void install(long gracePeriodMillis, @NonNull Reporter reporter) {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                new AsyncTeardown.NamedThreadFactory("ViewModel-leak"));
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        setInstance(new ViewModelLeakTracker(gracePeriodMillis, reporter, executor));
+    }
+
+    /**
+     * 停止跟踪，已经登记的 ViewModel 不再检查。
+     */
+    public static synchronized void uninstall() {
+        setInstance(null);
+    }
+
+    public static boolean isInstalled() {
+        return sInstance != null;
+    }
+
+    static synchronized void setInstance(@Nullable ViewModelLeakTracker tracker) {
+        ViewModelLeakTracker old = sInstance;
+        sInstance = tracker;
+        if (old != null && old.mExecutor != null) {
+            old.mExecutor.shutdownNow();
+        }
+    }
+
+    @Nullable
+    static ViewModelLeakTracker getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * ViewModel 已经被 clear，之后应该被回收。
+     */
+    static void watch(@NonNull String key, @NonNull ViewModel viewModel) {
+        ViewModelLeakTracker tracker = sInstance;
+        if (tracker != null) {
+            tracker.add(key, viewModel);
+        }
+    }
+
+    private void add(String key, ViewModel viewModel) {
+        mWatched.add(new Watched(viewModel, mQueue, key, System.nanoTime()));
+        scheduleCheck(mGracePeriodNanos);
+    }
+
+    private void scheduleCheck(long delayNanos) {
+        if (mExecutor != null && mCheckScheduled.compareAndSet(false, true)) {
+            mExecutor.schedule(mCheckRunnable, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private final Runnable mCheckRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mCheckScheduled.set(false);
+            check(System.nanoTime(), true);
+            long next = nextDeadline();
+            if (next >= 0) {
+                scheduleCheck(Math.max(0, next - System.nanoTime()));
+            }
+        }
+    };
+
+    /**
+     * 检查超过宽限期的 ViewModel，报告仍然存活的。
+     *
+     * @param gc 有疑似泄漏时是否先触发一次 GC 再确认
+     * @return 这次报告的数量
+     */
+    int check(long nowNanos, boolean gc) {
+        drainQueue();
+        List<Watched> expired = expired(nowNanos);
+        if (expired.isEmpty()) {
+            return 0;
+        }
+        if (gc) {
+            runGc();
+            drainQueue();
+        }
+        int reported = 0;
+        for (Watched watched : expired) {
+            if (watched.get() == null || !mWatched.remove(watched)) {
+                continue;
+            }
+            reported++;
+            mReportedCount++;
+            mReporter.onViewModelRetained(watched.mKey, watched.mClassName,
+                    TimeUnit.NANOSECONDS.toMillis(nowNanos - watched.mClearedAtNanos));
+        }
+        return reported;
+    }
+
+    private List<Watched> expired(long nowNanos) {
+        List<Watched> expired = new ArrayList<>();
+        for (Watched watched : mWatched) {
+            if (nowNanos - watched.mClearedAtNanos >= mGracePeriodNanos) {
+                expired.add(watched);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * @return 最早到期的时间，没有等待检查的 ViewModel 时返回 -1
+     */
+    private long nextDeadline() {
+        long next = -1;
+        for (Watched watched : mWatched) {
+            long deadline = watched.mClearedAtNanos + mGracePeriodNanos;
+            if (next < 0 || deadline - next < 0) {
+                next = deadline;
+            }
+        }
+        return next;
+    }
+
+    private void drainQueue() {
+        Object ref;
+        while ((ref = mQueue.poll()) != null) {
+            //noinspection SuspiciousMethodCalls
+            mWatched.remove(ref);
+        }
+    }
+
+    private static void runGc() {
+        // 只是请求 GC，等一会儿让弱引用入队
+        Runtime.getRuntime().gc();
+        try {
+            Thread.sleep(GC_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.runFinalization();
+    }
+
+    /**
+     * 已经 clear、还没有被回收也还没有报告的 ViewModel 数量。
+     */
+    int getWatchedCount() {
+        drainQueue();
+        return mWatched.size();
+    }
+
+    int getReportedCount() {
+        return mReportedCount;
+    }
+
+    private static final class Watched extends WeakReference<ViewModel> {
+        final String mKey;
+        // 只保存类名，不持有 Class，避免拖住已经卸载的 ClassLoader
+        final String mClassName;
+        final long mClearedAtNanos;
+
+        Watched(ViewModel viewModel, ReferenceQueue<ViewModel> queue, String key,
+                long clearedAtNanos) {
+            super(viewModel, queue);
+            mKey = key;
+            mClassName = viewModel.getClass().getName();
+            mClearedAtNanos = clearedAtNanos;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package androidx.lifecycle;
+
+import androidx.annotation.NonNull;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ViewModel 生命周期指标：按 class 统计 {@link ViewModelProvider#get(String, Class)} 的命中 / 未命中次数
+ * 和 Factory 创建耗时，以及 {@link ViewModelStore#clear()} 的耗时和 clear 时 store 中的条目数。
+ * <p>
+ * 默认关闭，关闭时每次 get 只多读一个 volatile 字段。开启后计数和直方图都是原子变量，
+ * 命中路径只做一次无锁的 class 查找和一次原子自增，不分配对象。
+ * 数据会出现在 FragmentActivity 的 dump() 输出中（adb shell dumpsys activity），也可以用 {@link #toJson()} 导出。
+ */
+public final class ViewModelMetrics {
+
+    private static volatile boolean sEnabled;
+
+    private static final WeakClassMap<ClassMetrics> sByClass = new WeakClassMap<>();
+    // 按第一次出现的顺序，导出时遍历，由自身保护
+    private static final List<ClassMetrics> sAll = new ArrayList<>();
+    private static final Histogram sClearNanos = new Histogram();
+    private static final Histogram sStoreSizeAtClear = new Histogram();
+
+    private ViewModelMetrics() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * 清空所有已经记录的数据。
+     */
+    public static void reset() {
+        synchronized (sAll) {
+            for (ClassMetrics metrics : sAll) {
+                metrics.reset();
+            }
+        }
+        sClearNanos.reset();
+        sStoreSizeAtClear.reset();
+    }
+
+    static void recordHit(@NonNull Class<?> modelClass) {
+        if (sEnabled) {
+            forClass(modelClass).mHits.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return 开启时返回开始时间，传给 {@link #recordCreate(Class, long)}；关闭时返回 0
+     */
+    static long startTiming() {
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    static void recordCreate(@NonNull Class<?> modelClass, long startNanos) {
+        if (sEnabled && startNanos != 0) {
+            ClassMetrics metrics = forClass(modelClass);
+            metrics.mMisses.incrementAndGet();
+            metrics.mCreateNanos.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    static void recordClear(long startNanos, int size) {
+        if (sEnabled && startNanos != 0) {
+            sClearNanos.record(System.nanoTime() - startNanos);
+            sStoreSizeAtClear.record(size);
+        }
+    }
+
+    private static ClassMetrics forClass(Class<?> modelClass) {
+        ClassMetrics metrics = sByClass.get(modelClass);
+        if (metrics == null) {
+            synchronized (sAll) {
+                metrics = sByClass.get(modelClass);
+                if (metrics == null) {
+                    metrics = new ClassMetrics(modelClass.getName());
+                    sByClass.put(modelClass, metrics);
+                    sAll.add(metrics);
+                }
+            }
+        }
+        return metrics;
+    }
+
+    private static final class ClassMetrics {
+        final String mClassName;
+        final AtomicLong mHits = new AtomicLong();
+        final AtomicLong mMisses = new AtomicLong();
+        final Histogram mCreateNanos = new Histogram();
+
+        ClassMetrics(String className) {
+            mClassName = className;
+        }
+
+        void reset() {
+            mHits.set(0);
+            mMisses.set(0);
+            mCreateNanos.reset();
+        }
+    }
+
+    /**
+     * 以 2 的幂为边界的直方图，第 i 个桶记录 [2^(i-1), 2^i) 的值，百分位取桶的上界。
+     */
+    static final class Histogram {
+        private static final int BUCKETS = 48;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mSum = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+            mBuckets.incrementAndGet(bucket);
+            mCount.incrementAndGet();
+            mSum.addAndGet(value);
+            long max;
+            while (value > (max = mMax.get())) {
+                if (mMax.compareAndSet(max, value)) {
+                    break;
+                }
+            }
+        }
+
+        long getCount() {
+            return mCount.get();
+        }
+
+        long getMean() {
+            long count = mCount.get();
+            return count == 0 ? 0 : mSum.get() / count;
+        }
+
+        long getMax() {
+            return mMax.get();
+        }
+
+        /**
+         * @param percentile 0 到 100
+         */
+        long getPercentile(int percentile) {
+            long count = mCount.get();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (count * percentile + 99) / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += mBuckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(i == 0 ? 0 : (1L << i) - 1, mMax.get());
+                }
+            }
+            return mMax.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                mBuckets.set(i, 0);
+            }
+            mCount.set(0);
+            mSum.set(0);
+            mMax.set(0);
+        }
+
+        void appendJson(StringBuilder out) {
+            out.append("{\"count\":").append(getCount())
+                    .append(",\"mean\":").append(getMean())
+                    .append(",\"p50\":").append(getPercentile(50))
+                    .append(",\"p90\":").append(getPercentile(90))
+                    .append(",\"p99\":").append(getPercentile(99))
+                    .append(",\"max\":").append(getMax())
+                    .append('}');
+        }
+
+        void dump(PrintWriter writer) {
+            writer.print("count=");
+            writer.print(getCount());
+            writer.print(" mean=");
+            writer.print(getMean());
+            writer.print(" p50=");
+            writer.print(getPercentile(50));
+            writer.print(" p90=");
+            writer.print(getPercentile(90));
+            writer.print(" p99=");
+            writer.print(getPercentile(99));
+            writer.print(" max=");
+            writer.print(getMax());
+        }
+    }
+
+    /**
+     * 导出为 JSON，耗时单位为纳秒：
+     * <pre>
+     * {"enabled":true,
+     *  "classes":[{"class":"...","hits":0,"misses":0,"createNanos":{"count":0,"mean":0,...}}],
+     *  "clearNanos":{...},"storeSizeAtClear":{...}}
+     * </pre>
+     */
+    @NonNull
+    public static String toJson() {
+        StringBuilder out = new StringBuilder(256);
+        out.append("{\"enabled\":").append(sEnabled).append(",\"classes\":[");
+        synchronized (sAll) {
+            for (int i = 0; i < sAll.size(); i++) {
+                ClassMetrics metrics = sAll.get(i);
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append("{\"class\":");
+                appendJsonString(out, metrics.mClassName);
+                out.append(",\"hits\":").append(metrics.mHits.get())
+                        .append(",\"misses\":").append(metrics.mMisses.get())
+                        .append(",\"createNanos\":");
+                metrics.mCreateNanos.appendJson(out);
+                out.append('}');
+            }
+        }
+        out.append("],\"clearNanos\":");
+        sClearNanos.appendJson(out);
+        out.append(",\"storeSizeAtClear\":");
+        sStoreSizeAtClear.appendJson(out);
+        out.append('}');
+        return out.toString();
+    }
+
+    /**
+     * 输出 store 当前的条目数，开启时再输出所有指标，供 Activity 的 dump() 调用。
+     */
+    public static void dump(@NonNull String prefix, @NonNull PrintWriter writer,
+                            @NonNull ViewModelStore store) {
+        writer.print(prefix);
+        writer.print("ViewModelStore ");
+        writer.print(store.getClass().getSimpleName());
+        writer.print(" size=");
+        writer.println(store.size());
+        if (!sEnabled) {
+            return;
+        }
+        String innerPrefix = prefix + "  ";
+        writer.print(prefix);
+        writer.println("ViewModel metrics (nanos):");
+        synchronized (sAll) {
+            for (ClassMetrics metrics : sAll) {
+                writer.print(innerPrefix);
+                writer.print(metrics.mClassName);
+                writer.print(" hits=");
+                writer.print(metrics.mHits.get());
+                writer.print(" misses=");
+                writer.print(metrics.mMisses.get());
+                writer.print(" create: ");
+                metrics.mCreateNanos.dump(writer);
+                writer.println();
+            }
+        }
+        writer.print(innerPrefix);
+        writer.print("clear: ");
+        sClearNanos.dump(writer);
+        writer.println();
+        writer.print(innerPrefix);
+        writer.print("store size at clear: ");
+        sStoreSizeAtClear.dump(writer);
+        writer.println();
+    }
+
+    private static void appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,292 @@
+package androidx.lifecycle;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动时预先创建 ViewModel，第一个用同样 key 和 class 获取它的页面直接拿到创建好的实例，
+ * 不用在 onCreate 里执行构造函数。在 Application.onCreate 中配置：
+ * <pre>
+ * ViewModelPreloader.install(this)
+ *         .preload(MainViewModel.class)
+ *         .startWhenIdle();
+ * </pre>
+ * 预创建和 {@link ViewModelProvider.AndroidViewModelFactory} 的创建方式相同，所以只有使用这个 Factory 本身
+ * （不包括子类）、并且 Application 就是 install 时传入的那个的 ViewModelProvider 会领取预创建的实例；
+ * 其他 Factory 创建出来的实例可能不一样。每个实例只交给第一个获取的页面，
+ * 超时（默认 {@value #DEFAULT_TIMEOUT_SECONDS} 秒）没有被领取的实例会被 clear。
+ * <p>
+ * 页面获取时如果还没有创建完成，页面自己创建，预创建的结果会被丢弃，不会等待。
+ */
+public final class ViewModelPreloader {
+
+    static final long DEFAULT_TIMEOUT_SECONDS = 30;
+
+    private static volatile ViewModelPreloader sInstance;
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_CREATING = 1;
+    private static final int STATE_READY = 2;
+
+    private static final class Entry {
+        final String mKey;
+        final Class<? extends ViewModel> mModelClass;
+        int mState = STATE_PENDING;
+        ViewModel mViewModel;
+        long mReadyAtNanos;
+
+        Entry(String key, Class<? extends ViewModel> modelClass) {
+            mKey = key;
+            mModelClass = modelClass;
+        }
+    }
+
+    private final Application mApplication;
+    // 按注册顺序创建，由 this 保护；被领取或超时后移除
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>();
+    private long mTimeoutNanos = TimeUnit.SECONDS.toNanos(DEFAULT_TIMEOUT_SECONDS);
+    private MainThreadScheduler mScheduler;
+
+    ViewModelPreloader(@NonNull Application application) {
+        mApplication = application;
+    }
+
+    /**
+     * 返回进程内唯一的预加载器，第一次调用时创建。
+     */
+    @NonNull
+    public static ViewModelPreloader install(@NonNull Application application) {
+        ViewModelPreloader preloader = sInstance;
+        if (preloader == null) {
+            synchronized (ViewModelPreloader.class) {
+                preloader = sInstance;
+                if (preloader == null) {
+                    preloader = new ViewModelPreloader(application);
+                    sInstance = preloader;
+                }
+            }
+        }
+        return preloader;
+    }
+
+    /**
+     * 预创建 {@link ViewModelProvider#get(Class)} 使用的默认 key 对应的 ViewModel。
+     */
+    @NonNull
+    public ViewModelPreloader preload(@NonNull Class<? extends ViewModel> modelClass) {
+        return preload(ViewModelProvider.getDefaultKey(modelClass), modelClass);
+    }
+
+    @NonNull
+    public synchronized ViewModelPreloader preload(@NonNull String key,
+                                                   @NonNull Class<? extends ViewModel> modelClass) {
+        if (!mEntries.containsKey(key)) {
+            mEntries.put(key, new Entry(key, modelClass));
+        }
+        return this;
+    }
+
+    /**
+     * 没有被领取的实例在创建完成后多久被 clear。
+     */
+    @NonNull
+    public synchronized ViewModelPreloader setTimeout(long timeout, @NonNull TimeUnit unit) {
+        mTimeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * 在主线程空闲时逐个创建，每次空闲只创建一个，适合构造函数需要在主线程执行的 ViewModel。
+     */
+    @MainThread
+    public void startWhenIdle() {
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                return createNext();
+            }
+        });
+    }
+
+    /**
+     * 在后台线程池中依次创建。
+     */
+    public void startInBackground() {
+        ViewModelTaskScope.getSharedExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                //noinspection StatementWithEmptyBody
+                while (createNext()) {
+                }
+            }
+        });
+    }
+
+    /**
+     * 创建下一个还没有创建的 ViewModel。
+     *
+     * @return 是否还有没有创建的
+     */
+    boolean createNext() {
+        Entry entry = null;
+        synchronized (this) {
+            for (Entry e : mEntries.values()) {
+                if (e.mState == STATE_PENDING) {
+                    entry = e;
+                    break;
+                }
+            }
+            if (entry == null) {
+                return false;
+            }
+            entry.mState = STATE_CREATING;
+        }
+        ViewModel viewModel = null;
+        try {
+            viewModel = ViewModelCreators.create(entry.mModelClass, mApplication);
+        } catch (RuntimeException e) {
+            // 预加载失败不影响页面，页面获取时会自己创建并抛出同样的异常
+        }
+        boolean stored = false;
+        long timeoutNanos;
+        synchronized (this) {
+            timeoutNanos = mTimeoutNanos;
+            if (mEntries.get(entry.mKey) == entry) {
+                if (viewModel == null) {
+                    mEntries.remove(entry.mKey);
+                } else {
+                    entry.mViewModel = viewModel;
+                    entry.mReadyAtNanos = System.nanoTime();
+                    entry.mState = STATE_READY;
+                    stored = true;
+                }
+            }
+        }
+        if (stored) {
+            scheduleExpiry(timeoutNanos);
+        } else if (viewModel != null) {
+            // 创建期间页面已经自己创建了
+            clearOnMainThread(viewModel);
+        }
+        return true;
+    }
+
+    /**
+     * 页面通过 AndroidViewModelFactory 获取 ViewModel 时调用，返回预创建的实例并把它从预加载器中移除。
+     *
+     * @param application Factory 的 Application，和预创建时用的不同时不领取
+     */
+    @Nullable
+    static <T extends ViewModel> T claim(@NonNull String key, @NonNull Class<T> modelClass,
+                                         @NonNull Application application) {
+        ViewModelPreloader preloader = sInstance;
+        return preloader != null && preloader.mApplication == application
+                ? preloader.claimEntry(key, modelClass) : null;
+    }
+
+    @Nullable
+    synchronized <T extends ViewModel> T claimEntry(@NonNull String key,
+                                                    @NonNull Class<T> modelClass) {
+        Entry entry = mEntries.get(key);
+        if (entry == null || entry.mModelClass != modelClass) {
+            return null;
+        }
+        // 还没有创建好时也移除，创建完成的实例会被丢弃
+        mEntries.remove(key);
+        //noinspection unchecked
+        return entry.mState == STATE_READY ? (T) entry.mViewModel : null;
+    }
+
+    /**
+     * clear 掉创建完成后超过超时时间仍没有被领取的实例，在主线程调用。
+     */
+    @MainThread
+    void expireUnclaimed(long nowNanos) {
+        List<ViewModel> expired = null;
+        synchronized (this) {
+            Iterator<Entry> iterator = mEntries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.mState == STATE_READY
+                        && nowNanos - entry.mReadyAtNanos >= mTimeoutNanos) {
+                    iterator.remove();
+                    if (expired == null) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(entry.mViewModel);
+                }
+            }
+        }
+        if (expired != null) {
+            for (ViewModel viewModel : expired) {
+                viewModel.clear();
+            }
+        }
+    }
+
+    /**
+     * 还没有被领取的条目数，包括还没有创建的。
+     */
+    synchronized int getUnclaimedCount() {
+        return mEntries.size();
+    }
+
+    private void scheduleExpiry(long timeoutNanos) {
+        getScheduler().postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                expireUnclaimed(System.nanoTime());
+            }
+        }, TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+    }
+
+    private void clearOnMainThread(final ViewModel viewModel) {
+        getScheduler().postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                viewModel.clear();
+            }
+        }, 0);
+    }
+
+    /**
+     * 向主线程投递任务，测试时替换。
+     */
+    interface MainThreadScheduler {
+        void postDelayed(@NonNull Runnable runnable, long delayMillis);
+    }
+
+    synchronized void setScheduler(@NonNull MainThreadScheduler scheduler) {
+        mScheduler = scheduler;
+    }
+
+    private synchronized MainThreadScheduler getScheduler() {
+        if (mScheduler == null) {
+            final Handler handler = new Handler(Looper.getMainLooper());
+            mScheduler = new MainThreadScheduler() {
+                @Override
+                public void postDelayed(@NonNull Runnable runnable, long delayMillis) {
+                    handler.postDelayed(runnable, delayMillis);
+                }
+            };
+        }
+        return mScheduler;
+    }
+
+    // 测试用
+    static void reset() {
+        sInstance = null;
+    }
+}
@@ -2,10 +2,10 @@ package androidx.lifecycle;
 
 import android.app.Application;
 
+import androidx.annotation.AnyThread;
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
-
-import java.lang.reflect.InvocationTargetException;
+import androidx.annotation.Nullable;
 
 /**
  * ViewModelProvider 是每次获取创建 ViewModel 的时候都会创建一个新的
@@ -15,6 +15,9 @@ public class ViewModelProvider {
 
     private static final String DEFAULT_KEY = "androidx.lifecycle.ViewModelProvider.DefaultKey";
 
+    // class 对应的默认 key，命中时不用再 getCanonicalName 和拼接字符串
+    private static final WeakClassMap<String> sDefaultKeys = new WeakClassMap<>();
+
     /**
      * Factory 接口的实现负责实例化 ViewModels。
      */
@@ -51,6 +54,28 @@ public class ViewModelProvider {
         }
     }
 
+    /**
+     * 注解处理器为 {@link GenerateViewModelFactory} 标记的 ViewModel 生成的工厂的父类，
+     * 直接 new 出 ViewModel，不经过反射。
+     * <p>
+     * 默认的 NewInstanceFactory / AndroidViewModelFactory 会优先使用它，找不到时才退回反射。
+     */
+    public abstract static class GeneratedFactory implements Factory {
+        /**
+         * @param application 创建 AndroidViewModel 时传入的 Application，创建普通 ViewModel 时可能为 null
+         * @return 实例化对应的 ViewModel
+         */
+        @NonNull
+        public abstract <T extends ViewModel> T create(@Nullable Application application,
+                                                       @NonNull Class<T> modelClass);
+
+        @NonNull
+        @Override
+        public <T extends ViewModel> T create(@NonNull Class<T> modelClass) {
+            return create(null, modelClass);
+        }
+    }
+
     private final Factory mFactory;
     private final ViewModelStore mViewModelStore;
 
@@ -74,20 +99,51 @@ public class ViewModelProvider {
     @NonNull
     @MainThread
     public <T extends ViewModel> T get(@NonNull Class<T> modelClass) {
-        String canonicalName = modelClass.getCanonicalName();
-        if (canonicalName == null) {
-            throw new IllegalArgumentException("Local and anonymous classes can not be ViewModels");
+        return get(getDefaultKey(modelClass), modelClass);
+    }
+
+    /**
+     * ViewModelStore 存储 ViewModel key 的获取：  DEFAULT_KEY 和 类名组成一个key值
+     * <p>
+     * 每个 class 只拼接一次，之后直接从缓存读取，不分配对象。
+     */
+    @NonNull
+    static String getDefaultKey(@NonNull Class<?> modelClass) {
+        String key = sDefaultKeys.get(modelClass);
+        if (key == null) {
+            String canonicalName = modelClass.getCanonicalName();
+            if (canonicalName == null) {
+                throw new IllegalArgumentException("Local and anonymous classes can not be ViewModels");
+            }
+            key = DEFAULT_KEY + ":" + canonicalName;
+            sDefaultKeys.put(modelClass, key);
         }
-        // ViewModelStore 存储 ViewModel key 的获取：  DEFAULT_KEY 和 类名组成一个key值
-        return get(DEFAULT_KEY + ":" + canonicalName, modelClass);
+        return key;
+    }
+
+    /**
+     * key 是否是 {@link #get(Class)} 使用的默认 key。
+     */
+    static boolean isDefaultKey(@NonNull String key) {
+        return key.startsWith(DEFAULT_KEY);
     }
 
+    /**
+     * 只能在主线程调用，后台线程使用 {@link #getConcurrent(String, Class)}。
+     * <p>
+     * key 被上级 store 标记为共享时从上级获取，见 {@link ViewModelStore#setParent(ViewModelStore)}。
+     */
     @NonNull
     @MainThread
     public <T extends ViewModel> T get(@NonNull String key, @NonNull Class<T> modelClass) {
-        ViewModel viewModel = mViewModelStore.get(key); // 先从缓存中获取
+        ViewModelStore store = mViewModelStore.resolve(key);
+        if (store instanceof ConcurrentViewModelStore) {
+            return ((ConcurrentViewModelStore) store).getOrCreate(key, modelClass, mFactory);
+        }
+        ViewModel viewModel = store.get(key); // 先从缓存中获取
 
         if (modelClass.isInstance(viewModel)) {  // 缓存有就直接返回，否则就用 Factory 从新创建
+            ViewModelMetrics.recordHit(modelClass);
             //noinspection unchecked
             return (T) viewModel;
         } else {
@@ -96,33 +152,117 @@ public class ViewModelProvider {
                 // TODO: log a warning.
             }
         }
-        if (mFactory instanceof KeyedFactory) {
-            viewModel = ((KeyedFactory) (mFactory)).create(key, modelClass);
-        } else {
-            viewModel = (mFactory).create(modelClass); // 创建对应的 viewModel
-        }
-        mViewModelStore.put(key, viewModel);  // 把创建好的 viewModel 存储到 ViewModelStore 的 HashMap 的 put 方法中
+        viewModel = create(store, mFactory, key, modelClass); // 创建对应的 viewModel
+        store.put(key, viewModel);  // 把创建好的 viewModel 存储到 ViewModelStore 中
         //noinspection unchecked
         return (T) viewModel;
     }
 
+    /**
+     * {@link #get(Class)} 的线程安全版本，见 {@link #getConcurrent(String, Class)}。
+     */
+    @NonNull
+    @AnyThread
+    public <T extends ViewModel> T getConcurrent(@NonNull Class<T> modelClass) {
+        return getConcurrent(getDefaultKey(modelClass), modelClass);
+    }
+
+    /**
+     * 可以在任意线程调用，同一个 key 并发调用时只会创建一个 ViewModel。
+     *
+     * @throws IllegalStateException key 所在的 store 不是 {@link ConcurrentViewModelStore}
+     */
+    @NonNull
+    @AnyThread
+    public <T extends ViewModel> T getConcurrent(@NonNull String key,
+                                                 @NonNull Class<T> modelClass) {
+        ViewModelStore store = mViewModelStore.resolve(key);
+        if (!(store instanceof ConcurrentViewModelStore)) {
+            throw new IllegalStateException("getConcurrent() requires a ConcurrentViewModelStore, "
+                    + "but " + key + " is stored in " + store.getClass().getName());
+        }
+        return ((ConcurrentViewModelStore) store).getOrCreate(key, modelClass, mFactory);
+    }
+
+    /**
+     * 返回延迟句柄，第一次 {@link ViewModelLazy#get()} 时才计算 key 并调用 {@link #get(Class)}。
+     */
+    @NonNull
+    public <T extends ViewModel> ViewModelLazy<T> lazy(@NonNull Class<T> modelClass) {
+        return new ViewModelLazy<>(this, null, modelClass);
+    }
+
+    /**
+     * 返回延迟句柄，第一次 {@link ViewModelLazy#get()} 时才调用 {@link #get(String, Class)}。
+     */
+    @NonNull
+    public <T extends ViewModel> ViewModelLazy<T> lazy(@NonNull String key,
+                                                       @NonNull Class<T> modelClass) {
+        return new ViewModelLazy<>(this, key, modelClass);
+    }
+
+    /**
+     * {@link #get(Class)} 的异步版本，ViewModel 在后台线程创建后在主线程放入 ViewModelStore。
+     */
+    @NonNull
+    @MainThread
+    public <T extends ViewModel> PendingViewModel<T> getAsync(@NonNull Class<T> modelClass) {
+        return getAsync(getDefaultKey(modelClass), modelClass);
+    }
+
+    /**
+     * store 中已经有时直接返回已完成的结果；同一个 key 正在创建时返回同一个 {@link PendingViewModel}。
+     */
+    @NonNull
+    @MainThread
+    public <T extends ViewModel> PendingViewModel<T> getAsync(@NonNull String key,
+                                                              @NonNull Class<T> modelClass) {
+        return PendingViewModel.obtain(mViewModelStore.resolve(key), mFactory, key, modelClass);
+    }
+
+    /**
+     * 创建 ViewModel 并记录耗时，store 上有进程重建前的快照时恢复它的状态。
+     */
+    @NonNull
+    static <T extends ViewModel> T create(@NonNull ViewModelStore store, @NonNull Factory factory,
+                                          @NonNull String key, @NonNull Class<T> modelClass) {
+        long start = ViewModelMetrics.startTiming();
+        T viewModel = create(factory, key, modelClass);
+        ViewModelMetrics.recordCreate(modelClass, start);
+        ViewModelSnapshot snapshot = store.getSnapshot();
+        if (snapshot != null) {
+            snapshot.restore(key, viewModel);
+        }
+        return viewModel;
+    }
+
+    @NonNull
+    static <T extends ViewModel> T create(@NonNull Factory factory, @NonNull String key,
+                                          @NonNull Class<T> modelClass) {
+        if (factory.getClass() == AndroidViewModelFactory.class) {
+            // 预创建的实例和这个 Factory 的创建方式相同，Application 一致时优先领取
+            T preloaded = ViewModelPreloader.claim(key, modelClass,
+                    ((AndroidViewModelFactory) factory).mApplication);
+            if (preloaded != null) {
+                return preloaded;
+            }
+        }
+        if (factory instanceof KeyedFactory) {
+            return ((KeyedFactory) factory).create(key, modelClass);
+        }
+        return factory.create(modelClass);
+    }
+
     /**
      * Simple factory, which calls empty constructor on the give class.  简单工厂，它在给定类上调用空构造函数
      */
     public static class NewInstanceFactory implements Factory {
 
-        @SuppressWarnings("ClassNewInstance")
         @NonNull
         @Override
         public <T extends ViewModel> T create(@NonNull Class<T> modelClass) {
-            //noinspection TryWithIdenticalCatches
-            try {
-                return modelClass.newInstance();
-            } catch (InstantiationException e) {
-                throw new RuntimeException("Cannot create an instance of " + modelClass, e);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException("Cannot create an instance of " + modelClass, e);
-            }
+            // 有编译期生成的工厂就直接调用构造函数，否则用按 class 缓存的 Constructor 反射创建
+            return ViewModelCreators.create(modelClass, null);
         }
     }
 
@@ -152,22 +292,8 @@ public class ViewModelProvider {
         @NonNull
         @Override
         public <T extends ViewModel> T create(@NonNull Class<T> modelClass) {
-            if (AndroidViewModel.class.isAssignableFrom(modelClass)) {
-                //noinspection TryWithIdenticalCatches
-                try {
-                    // 创建ViewModel的关键地方，根据给出的Class反射创建需要的ViewModel
-                    return modelClass.getConstructor(Application.class).newInstance(mApplication);
-                } catch (NoSuchMethodException e) {
-                    throw new RuntimeException("Cannot create an instance of " + modelClass, e);
-                } catch (IllegalAccessException e) {
-                    throw new RuntimeException("Cannot create an instance of " + modelClass, e);
-                } catch (InstantiationException e) {
-                    throw new RuntimeException("Cannot create an instance of " + modelClass, e);
-                } catch (InvocationTargetException e) {
-                    throw new RuntimeException("Cannot create an instance of " + modelClass, e);
-                }
-            }
-            return super.create(modelClass);
+            // 生成工厂、空构造函数或 (Application) 构造函数，解析一次后按 class 缓存
+            return ViewModelCreators.create(modelClass, mApplication);
         }
     }
 }
@@ -10,6 +10,9 @@ import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentActivity;
 import androidx.lifecycle.ViewModelProvider.Factory;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * ViewModel 的创建不可直接 new，需要使用这个 ViewModelProviders 才能与 Activity 或者 Fragment 的生命周期关联起来！
  * ViewModel 的存在是依赖 Activity 或者 Fragment的，不管你在什么地方获取 ViewModel，
@@ -68,6 +71,9 @@ public class ViewModelProviders {
 
     /**
      * 通过给定的工厂来实例化一个新的 ViewModels.
+     * <p>
+     * fragment 的 store 以父 Fragment 或宿主 Activity 的 store 为上级，上级标记为共享的 ViewModel 不会重复创建，
+     * 见 {@link ViewModelStore#share(Class)}。
      */
     @NonNull
     @MainThread
@@ -77,7 +83,14 @@ public class ViewModelProviders {
             // 获取默认的单例 AndroidViewModelFactory，它内部是通过反射来创建具体的 ViewModel
             factory = ViewModelProvider.AndroidViewModelFactory.getInstance(application);
         }
-        return new ViewModelProvider(fragment.getViewModelStore(), factory);
+        // 一直连到 Activity，中间没有调用过 of() 的父 Fragment 也要连上，否则共享的 key 找不到 Activity
+        List<ViewModelStore> chain = new ArrayList<>();
+        for (Fragment f = fragment; f != null; f = f.getParentFragment()) {
+            chain.add(f.getViewModelStore());
+        }
+        chain.add(fragment.requireActivity().getViewModelStore());
+        ViewModelStore.linkChain(chain);
+        return new ViewModelProvider(chain.get(0), factory);
     }
 
     /**
@@ -94,6 +107,34 @@ public class ViewModelProviders {
         return new ViewModelProvider(activity.getViewModelStore(), factory);
     }
 
+    /**
+     * 从 activity 加入的命名共享作用域中获取 ViewModel，最后一个参与的页面销毁时这些 ViewModel 才会被清除。
+     *
+     * @see SharedViewModelScopes
+     */
+    @NonNull
+    @MainThread
+    public static ViewModelProvider ofSharedScope(@NonNull FragmentActivity activity,
+                                                  @NonNull String scopeName) {
+        Application application = checkApplication(activity);
+        return new ViewModelProvider(SharedViewModelScopes.join(activity, scopeName),
+                ViewModelProvider.AndroidViewModelFactory.getInstance(application));
+    }
+
+    /**
+     * 从 fragment 加入的命名共享作用域中获取 ViewModel。
+     *
+     * @see SharedViewModelScopes
+     */
+    @NonNull
+    @MainThread
+    public static ViewModelProvider ofSharedScope(@NonNull Fragment fragment,
+                                                  @NonNull String scopeName) {
+        Application application = checkApplication(checkActivity(fragment));
+        return new ViewModelProvider(SharedViewModelScopes.join(fragment, scopeName),
+                ViewModelProvider.AndroidViewModelFactory.getInstance(application));
+    }
+
     /**
      * 工厂可创建 AndroidViewModel 和 ViewModel，具有空构造函数的.
      * <p>
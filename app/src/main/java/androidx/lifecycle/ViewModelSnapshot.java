@@ -0,0 +1,334 @@
+package androidx.lifecycle;
+
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 进程被杀后恢复 ViewModel 状态用的二进制快照。
+ * <p>
+ * 实现了 {@link Savable} 的 ViewModel 在 onSaveInstanceState 时把状态写进快照，
+ * 小快照直接放进 Bundle，超过 {@link #BUNDLE_LIMIT_BYTES} 的写进调用方指定的内存映射文件，Bundle 里只放路径。
+ * 同一个页面每次保存都覆盖同一个文件，页面结束时由调用方删除。
+ * 重建后快照挂在新的 ViewModelStore 上，{@link ViewModelProvider#get(String, Class)} 创建 ViewModel 时
+ * 才读取对应的那一段，用不到的 ViewModel 不会被解析。
+ * <p>
+ * 格式：magic、条目数，每个条目是 key、ViewModel 类名、数据长度和数据。
+ */
+public final class ViewModelSnapshot {
+
+    /**
+     * 需要在进程被杀后恢复状态的 ViewModel 实现这个接口。
+     */
+    public interface Savable {
+        /**
+         * 在主线程调用，写入恢复所需的状态。
+         */
+        void writeSnapshot(@NonNull DataOutput out) throws IOException;
+
+        /**
+         * 重建后第一次获取时调用，紧跟在构造函数之后。抛出 IOException 时放弃恢复。
+         */
+        void readSnapshot(@NonNull DataInput in) throws IOException;
+    }
+
+    static final String STATE_BYTES = "android:support:viewmodel_snapshot";
+    static final String STATE_FILE = "android:support:viewmodel_snapshot_file";
+    static final int BUNDLE_LIMIT_BYTES = 64 * 1024;
+
+    private static final int MAGIC = 0x564d5331; // "VMS1"
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final class Entry {
+        final String mClassName;
+        final ByteBuffer mData;
+
+        Entry(String className, ByteBuffer data) {
+            mClassName = className;
+            mData = data;
+        }
+    }
+
+    // 还没有被恢复的条目，由 this 保护
+    private final HashMap<String, Entry> mEntries;
+
+    private ViewModelSnapshot(HashMap<String, Entry> entries) {
+        mEntries = entries;
+    }
+
+    /**
+     * 把 store 中可保存的 ViewModel 写进 outState，快照为空时什么都不写。
+     * 不写文件时删除 file 中上次保存的快照。
+     *
+     * @param file 大快照写入的文件，已存在时覆盖。不再需要时由调用方删除
+     * @return 是否写入了 file
+     */
+    public static boolean save(@NonNull ViewModelStore store, @NonNull Bundle outState,
+                               @NonNull File file) {
+        byte[] bytes;
+        try {
+            bytes = encode(store);
+        } catch (IOException e) {
+            // 写到内存中不会失败，只可能来自 writeSnapshot
+            throw new RuntimeException("Cannot write ViewModel snapshot", e);
+        }
+        if (bytes == null || bytes.length <= BUNDLE_LIMIT_BYTES) {
+            if (bytes != null) {
+                outState.putByteArray(STATE_BYTES, bytes);
+            }
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return false;
+        }
+        try {
+            writeMapped(file, bytes);
+            outState.putString(STATE_FILE, file.getAbsolutePath());
+            return true;
+        } catch (IOException e) {
+            // 写不了文件就不保存，重建后 ViewModel 从头加载
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return false;
+        }
+    }
+
+    /**
+     * 从 onCreate 的 savedInstanceState 中读出快照，没有时返回 null。快照文件映射后立即删除。
+     */
+    @Nullable
+    public static ViewModelSnapshot restore(@Nullable Bundle savedInstanceState) {
+        if (savedInstanceState == null) {
+            return null;
+        }
+        try {
+            byte[] bytes = savedInstanceState.getByteArray(STATE_BYTES);
+            if (bytes != null) {
+                return decode(ByteBuffer.wrap(bytes));
+            }
+            String path = savedInstanceState.getString(STATE_FILE);
+            if (path != null) {
+                File file = new File(path);
+                try {
+                    return decode(map(file));
+                } finally {
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+            }
+        } catch (IOException e) {
+            // 文件被清理或者内容损坏，放弃恢复
+        }
+        return null;
+    }
+
+    /**
+     * 把 store 中实现了 {@link Savable} 的 ViewModel，以及 store 的快照中还没有被恢复的条目编码。
+     *
+     * @return 没有需要保存的内容时返回 null
+     */
+    @Nullable
+    static byte[] encode(@NonNull ViewModelStore store) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+        DataOutputStream entryOut = new DataOutputStream(entryBytes);
+        out.writeInt(MAGIC);
+        out.writeInt(0);
+        int count = 0;
+        // BoundedViewModelStore 的 get 会调整访问顺序，不能边遍历 keys 视图边 get。
+        // 按 LRU 顺序逐个 get 之后相对顺序不变
+        String[] keys = store.keys().toArray(new String[store.size()]);
+        for (String key : keys) {
+            ViewModel viewModel = store.get(key);
+            if (!(viewModel instanceof Savable)) {
+                continue;
+            }
+            entryBytes.reset();
+            ((Savable) viewModel).writeSnapshot(entryOut);
+            entryOut.flush();
+            writeString(out, key);
+            writeString(out, viewModel.getClass().getName());
+            out.writeInt(entryBytes.size());
+            entryBytes.writeTo(out);
+            count++;
+        }
+        ViewModelSnapshot previous = store.getSnapshot();
+        if (previous != null) {
+            // 上次重建后还没有被获取过的 ViewModel，原样带到新的快照里
+            synchronized (previous) {
+                for (Map.Entry<String, Entry> e : previous.mEntries.entrySet()) {
+                    if (store.keys().contains(e.getKey())) {
+                        continue;
+                    }
+                    ByteBuffer data = e.getValue().mData.duplicate();
+                    byte[] raw = new byte[data.remaining()];
+                    data.get(raw);
+                    writeString(out, e.getKey());
+                    writeString(out, e.getValue().mClassName);
+                    out.writeInt(raw.length);
+                    out.write(raw);
+                    count++;
+                }
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        out.flush();
+        byte[] result = bytes.toByteArray();
+        ByteBuffer.wrap(result).putInt(4, count);
+        return result;
+    }
+
+    /**
+     * 只建立 key 到数据的索引，数据本身在恢复时才读取。
+     */
+    @NonNull
+    static ViewModelSnapshot decode(@NonNull ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a ViewModel snapshot");
+            }
+            int count = buffer.getInt();
+            HashMap<String, Entry> entries = new HashMap<>(Math.max(4, count * 2));
+            for (int i = 0; i < count; i++) {
+                String key = readString(buffer);
+                String className = readString(buffer);
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("Corrupt ViewModel snapshot");
+                }
+                ByteBuffer data = buffer.slice();
+                data.limit(length);
+                buffer.position(buffer.position() + length);
+                entries.put(key, new Entry(className, data));
+            }
+            return new ViewModelSnapshot(entries);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt ViewModel snapshot", e);
+        }
+    }
+
+    /**
+     * 如果快照中有 key 对应的状态，并且类名一致，读入刚创建的 viewModel。每个条目只恢复一次。
+     */
+    void restore(@NonNull String key, @NonNull ViewModel viewModel) {
+        Entry entry;
+        synchronized (this) {
+            entry = mEntries.remove(key);
+        }
+        if (entry == null || !(viewModel instanceof Savable)
+                || !entry.mClassName.equals(viewModel.getClass().getName())) {
+            return;
+        }
+        try {
+            ((Savable) viewModel).readSnapshot(
+                    new DataInputStream(new ByteBufferInputStream(entry.mData.duplicate())));
+        } catch (IOException e) {
+            // 放弃恢复，ViewModel 保持刚创建的状态
+        }
+    }
+
+    /**
+     * 还没有被恢复的条目数。
+     */
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * 覆盖写入 file。不调用 force()，避免在主线程等待落盘：进程被杀后脏页仍由内核写回，
+     * 只有设备重启才会丢失，而那时保存的页面状态本来也不会恢复。
+     */
+    static void writeMapped(@NonNull File file, @NonNull byte[] bytes) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // 上次写入的快照可能更长
+            raf.setLength(bytes.length);
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes.length);
+            mapped.put(bytes);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * 映射在文件关闭、删除之后仍然有效。
+     */
+    @NonNull
+    static ByteBuffer map(@NonNull File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Corrupt ViewModel snapshot");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer mBuffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!mBuffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, mBuffer.remaining());
+            mBuffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
+    }
+}
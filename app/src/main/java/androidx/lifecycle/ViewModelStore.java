@@ -1,7 +1,16 @@
 package androidx.lifecycle;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -15,35 +24,341 @@ import java.util.Set;
  * 如果此 ViewModelStore 的所有者被销毁，并且不会被重新创建，
  * 然后它应该在这个 viewModelStore 上调用 clear（），因此 ViewModels 通知他们不再使用。
  * 当Activity或者Fragment销毁的时候就会调用clear方法
+ * <p>
+ * 一个 store 通常只有一到四个 ViewModel，所以先用 key/value 交替存放的数组线性查找，
+ * 超过 {@link #ARRAY_THRESHOLD} 个才换成 HashMap。数组在第一次 put 时才分配。
+ * <p>
+ * 这个实现不是线程安全的，只能在主线程使用；需要在后台线程获取 ViewModel 时使用 {@link ConcurrentViewModelStore}。
+ * <p>
+ * store 可以通过 {@link #setParent(ViewModelStore)} 指定上级（Fragment 的上级是父 Fragment 或宿主 Activity）。
+ * 上级用 {@link #share(String)} 标记为共享的 key，在下级 store 上通过 {@link ViewModelProvider} 获取时
+ * 会直接取上级中的实例，没有时在上级中创建，整个页面只有一份。
  *
  * TODO ViewModelStore 是每一个 Activity 或者 Fragment 都有一个
  */
 public class ViewModelStore {
 
-    private final HashMap<String, ViewModel> mMap = new HashMap<>();
+    // 超过这个数量才换成 HashMap
+    static final int ARRAY_THRESHOLD = 8;
+    private static final int INITIAL_CAPACITY = 2;
+
+    // key/value 交替存放：[key0, value0, key1, value1, ...]
+    private Object[] mArray;
+    private int mSize;
+    // 超过 ARRAY_THRESHOLD 后使用，此时 mArray 为 null
+    private HashMap<String, ViewModel> mMap;
+    private Set<String> mKeys;
+    private AsyncTeardown mAsyncTeardown;
+    // getAsync 正在后台创建的 ViewModel，用到时才分配，由 this 保护
+    private HashMap<String, PendingViewModel<?>> mPendingCreations;
+    // 进程被杀后重建时还没有恢复的 ViewModel 状态
+    private volatile ViewModelSnapshot mSnapshot;
+    private ViewModelStore mParent;
+    // 与下级 store 共享的 key，用到时才分配
+    private HashSet<String> mSharedKeys;
 
-    final void put(String key, ViewModel viewModel) {
-        ViewModel oldViewModel = mMap.put(key, viewModel);
+    void put(String key, ViewModel viewModel) {
+        ViewModel oldViewModel;
+        if (mMap != null) {
+            oldViewModel = mMap.put(key, viewModel);
+        } else {
+            oldViewModel = putInArray(key, viewModel);
+        }
         if (oldViewModel != null) {
             oldViewModel.onCleared();
+            ViewModelLeakTracker.watch(key, oldViewModel);
         }
     }
 
-    final ViewModel get(String key) {
-        return mMap.get(key);
+    ViewModel get(String key) {
+        if (mMap != null) {
+            return mMap.get(key);
+        }
+        int index = indexOf(key);
+        return index >= 0 ? (ViewModel) mArray[index + 1] : null;
     }
 
+    /**
+     * 返回 key 的只读视图，不复制。视图跟随 store 变化，遍历时不要修改 store。
+     */
     Set<String> keys() {
-        return new HashSet<>(mMap.keySet());
+        if (mKeys == null) {
+            mKeys = new KeySet();
+        }
+        return mKeys;
+    }
+
+    int size() {
+        return mMap != null ? mMap.size() : mSize;
+    }
+
+    /**
+     * 设置后，clear() 时 ViewModel 的 onCleared() 仍然在调用线程执行，tag 中的 Closeable 交给
+     * {@link AsyncTeardown} 在后台关闭。传 null 恢复同步关闭。
+     */
+    public void setAsyncTeardown(@Nullable AsyncTeardown asyncTeardown) {
+        mAsyncTeardown = asyncTeardown;
+    }
+
+    @Nullable
+    public AsyncTeardown getAsyncTeardown() {
+        return mAsyncTeardown;
+    }
+
+    /**
+     * 挂上 onCreate 时恢复出来的快照，之后通过 {@link ViewModelProvider} 创建的 ViewModel 会从快照中读取状态。
+     */
+    public void setSnapshot(@Nullable ViewModelSnapshot snapshot) {
+        mSnapshot = snapshot;
+    }
+
+    @Nullable
+    ViewModelSnapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * 指定上级 store，上级中标记为共享的 key 从上级获取。上级的生命周期不能比这个 store 短。
+     */
+    public void setParent(@Nullable ViewModelStore parent) {
+        for (ViewModelStore store = parent; store != null; store = store.mParent) {
+            if (store == this) {
+                throw new IllegalArgumentException("ViewModelStore cannot be its own ancestor");
+            }
+        }
+        mParent = parent;
+    }
+
+    @Nullable
+    public ViewModelStore getParent() {
+        return mParent;
+    }
+
+    /**
+     * 把 chain 中每个 store 的上级设为它后面的那个，已经有上级的保持不变。
+     * chain 从最下级开始，到 Activity 的 store 结束。
+     */
+    static void linkChain(@NonNull List<ViewModelStore> chain) {
+        for (int i = 0; i < chain.size() - 1; i++) {
+            ViewModelStore store = chain.get(i);
+            if (store.mParent == null) {
+                store.setParent(chain.get(i + 1));
+            }
+        }
+    }
+
+    /**
+     * 把 key 标记为与下级 store 共享。
+     */
+    public void share(@NonNull String key) {
+        if (mSharedKeys == null) {
+            mSharedKeys = new HashSet<>(4);
+        }
+        mSharedKeys.add(key);
+    }
+
+    /**
+     * 把 {@link ViewModelProvider#get(Class)} 使用的默认 key 标记为与下级 store 共享。
+     */
+    public void share(@NonNull Class<? extends ViewModel> modelClass) {
+        share(ViewModelProvider.getDefaultKey(modelClass));
+    }
+
+    /**
+     * 返回 key 应该存放的 store：最近的把 key 标记为共享的上级，没有时是自己。
+     */
+    @NonNull
+    final ViewModelStore resolve(@NonNull String key) {
+        if (mParent == null) {
+            return this;
+        }
+        for (ViewModelStore store = mParent; store != null; store = store.mParent) {
+            if (store.mSharedKeys != null && store.mSharedKeys.contains(key)) {
+                return store;
+            }
+        }
+        return this;
     }
 
     /**
      * 清除内部存储并通知 ViewModel 它们不再使用
      */
-    public final void clear() {
-        for (ViewModel vm : mMap.values()) {
-            vm.clear();
+    public void clear() {
+        long start = ViewModelMetrics.startTiming();
+        int size = size();
+        cancelPendingCreations();
+        List<Object> deferred = beginClear();
+        if (mMap != null) {
+            for (Map.Entry<String, ViewModel> entry : mMap.entrySet()) {
+                entry.getValue().clear(deferred);
+                ViewModelLeakTracker.watch(entry.getKey(), entry.getValue());
+            }
+            mMap = null;
+        } else {
+            for (int i = 0; i < mSize; i++) {
+                ViewModel vm = (ViewModel) mArray[(i << 1) + 1];
+                vm.clear(deferred);
+                ViewModelLeakTracker.watch((String) mArray[i << 1], vm);
+            }
+        }
+        mArray = null;
+        mSize = 0;
+        endClear(deferred);
+        ViewModelMetrics.recordClear(start, size);
+    }
+
+    /**
+     * 开启了异步销毁时返回收集 Closeable 的列表，传给 {@link ViewModel#clear(List)}，否则返回 null。
+     */
+    @Nullable
+    final List<Object> beginClear() {
+        return mAsyncTeardown != null ? new ArrayList<>() : null;
+    }
+
+    final void endClear(@Nullable List<Object> deferred) {
+        if (deferred != null && !deferred.isEmpty()) {
+            mAsyncTeardown.close(deferred);
+        }
+    }
+
+    synchronized PendingViewModel<?> getPendingCreation(String key) {
+        return mPendingCreations != null ? mPendingCreations.get(key) : null;
+    }
+
+    synchronized void putPendingCreation(String key, PendingViewModel<?> pending) {
+        if (mPendingCreations == null) {
+            mPendingCreations = new HashMap<>(4);
+        }
+        mPendingCreations.put(key, pending);
+    }
+
+    /**
+     * @return pending 仍然是 key 当前的创建任务，没有被 clear 或新的创建取代
+     */
+    synchronized boolean removePendingCreation(String key, PendingViewModel<?> pending) {
+        if (mPendingCreations == null || mPendingCreations.get(key) != pending) {
+            return false;
+        }
+        mPendingCreations.remove(key);
+        return true;
+    }
+
+    /**
+     * store 被 clear 时取消还没有完成的后台创建，创建完成的 ViewModel 不会放入 store，直接被 clear。
+     * 没有恢复的快照也一起丢弃。
+     */
+    final void cancelPendingCreations() {
+        mSnapshot = null;
+        HashMap<String, PendingViewModel<?>> pending;
+        synchronized (this) {
+            pending = mPendingCreations;
+            mPendingCreations = null;
+        }
+        if (pending != null) {
+            for (PendingViewModel<?> creation : pending.values()) {
+                creation.cancelCreation();
+            }
+        }
+    }
+
+    private int indexOf(String key) {
+        Object[] array = mArray;
+        int end = mSize << 1;
+        for (int i = 0; i < end; i += 2) {
+            Object k = array[i];
+            if (k == key || key.equals(k)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private ViewModel putInArray(String key, ViewModel viewModel) {
+        if (mArray != null) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                ViewModel old = (ViewModel) mArray[index + 1];
+                mArray[index + 1] = viewModel;
+                return old;
+            }
+        }
+        if (mSize == ARRAY_THRESHOLD) {
+            HashMap<String, ViewModel> map = new HashMap<>(ARRAY_THRESHOLD * 4);
+            for (int i = 0; i < mSize; i++) {
+                map.put((String) mArray[i << 1], (ViewModel) mArray[(i << 1) + 1]);
+            }
+            map.put(key, viewModel);
+            mMap = map;
+            mArray = null;
+            mSize = 0;
+            return null;
+        }
+        if (mArray == null) {
+            mArray = new Object[INITIAL_CAPACITY << 1];
+        } else if (mSize << 1 == mArray.length) {
+            Object[] array = new Object[Math.min(mSize << 1, ARRAY_THRESHOLD) << 1];
+            System.arraycopy(mArray, 0, array, 0, mArray.length);
+            mArray = array;
+        }
+        mArray[mSize << 1] = key;
+        mArray[(mSize << 1) + 1] = viewModel;
+        mSize++;
+        return null;
+    }
+
+    private final class KeySet extends AbstractSet<String> {
+        @Override
+        public int size() {
+            return ViewModelStore.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof String && get((String) o) != null;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            if (mMap != null) {
+                final Iterator<String> iterator = mMap.keySet().iterator();
+                return new Iterator<String>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return iterator.next();
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+            return new Iterator<String>() {
+                private int mIndex;
+
+                @Override
+                public boolean hasNext() {
+                    return mIndex < mSize;
+                }
+
+                @Override
+                public String next() {
+                    if (mIndex >= mSize) {
+                        throw new NoSuchElementException();
+                    }
+                    return (String) mArray[(mIndex++) << 1];
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
         }
-        mMap.clear();
     }
 }
@@ -0,0 +1,156 @@
+package androidx.lifecycle;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 属于某个 ViewModel 的后台任务作用域，通过 setTagIfAbsent 作为 Closeable 挂在 ViewModel 上，
+ * ViewModel clear() 时会取消（并中断）所有还没有结束的任务，页面销毁后不再占用 CPU。
+ * <p>
+ * 所有 ViewModel 共用一个线程数等于 CPU 核数的线程池，API 21 及以上使用 work-stealing 的 ForkJoinPool，
+ * 不会为每个任务单独创建线程。
+ * <pre>
+ * ViewModelTaskScope.of(this).launch(new Runnable() { ... });
+ * </pre>
+ */
+public final class ViewModelTaskScope implements Closeable {
+
+    private static final String TAG_KEY = "androidx.lifecycle.ViewModelTaskScope.TAG_KEY";
+
+    private static Executor sSharedExecutor;
+
+    private final Executor mExecutor;
+    private final Set<Task<?>> mTasks =
+            Collections.newSetFromMap(new ConcurrentHashMap<Task<?>, Boolean>());
+    private volatile boolean mClosed;
+
+    ViewModelTaskScope(@NonNull Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * 返回 viewModel 的任务作用域，第一次调用时创建。ViewModel 已经 clear 时返回的作用域已经关闭。
+     */
+    @NonNull
+    public static ViewModelTaskScope of(@NonNull ViewModel viewModel) {
+        ViewModelTaskScope scope = viewModel.getTag(TAG_KEY);
+        if (scope != null) {
+            return scope;
+        }
+        return viewModel.setTagIfAbsent(TAG_KEY, new ViewModelTaskScope(getSharedExecutor()));
+    }
+
+    @NonNull
+    public Future<?> launch(@NonNull Runnable runnable) {
+        return submit(new Task<>(runnable, null));
+    }
+
+    @NonNull
+    public <T> Future<T> submit(@NonNull Callable<T> callable) {
+        return submit(new Task<>(callable));
+    }
+
+    private <T> Future<T> submit(Task<T> task) {
+        if (mClosed) {
+            task.cancel(false);
+            return task;
+        }
+        mTasks.add(task);
+        // close() 可能发生在上面的检查和 add 之间
+        if (mClosed) {
+            task.cancel(false);
+            return task;
+        }
+        try {
+            mExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            mTasks.remove(task);
+            throw e;
+        }
+        return task;
+    }
+
+    /**
+     * 还没有结束的任务数。
+     */
+    public int getActiveTaskCount() {
+        return mTasks.size();
+    }
+
+    public boolean isClosed() {
+        return mClosed;
+    }
+
+    /**
+     * 取消所有任务，正在运行的任务会被中断。之后提交的任务直接返回已取消的 Future。
+     */
+    @Override
+    public void close() {
+        mClosed = true;
+        for (Task<?> task : mTasks) {
+            task.cancel(true);
+        }
+    }
+
+    private final class Task<T> extends FutureTask<T> {
+        Task(Callable<T> callable) {
+            super(callable);
+        }
+
+        Task(Runnable runnable, T result) {
+            super(runnable, result);
+        }
+
+        @Override
+        protected void done() {
+            mTasks.remove(this);
+        }
+    }
+
+    @NonNull
+    static synchronized Executor getSharedExecutor() {
+        if (sSharedExecutor == null) {
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            sSharedExecutor = createWorkStealingPool(threads);
+            if (sSharedExecutor == null) {
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                        30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                        new AsyncTeardown.NamedThreadFactory("ViewModel-task"));
+                executor.allowCoreThreadTimeOut(true);
+                sSharedExecutor = executor;
+            }
+        }
+        return sSharedExecutor;
+    }
+
+    // ForkJoinPool 从 API 21 才有，低版本返回 null 使用普通线程池
+    private static Executor createWorkStealingPool(int threads) {
+        try {
+            Class.forName("java.util.concurrent.ForkJoinPool");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        return WorkStealingPool.create(threads);
+    }
+
+    // 单独放一个类，低版本上不会加载到 ForkJoinPool
+    private static final class WorkStealingPool {
+        static Executor create(int threads) {
+            return new java.util.concurrent.ForkJoinPool(threads,
+                    java.util.concurrent.ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                    null, true);
+        }
+    }
+}
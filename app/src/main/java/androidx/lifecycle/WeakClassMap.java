@@ -0,0 +1,92 @@
+package androidx.lifecycle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * 以 Class 为 key 的缓存，key 是弱引用，class 不再使用时可以被卸载。
+ * <p>
+ * 读操作不加锁也不分配对象：内部是一个写时复制的开放寻址数组，get 只读一次 volatile 引用。
+ * 写操作加锁，复制数组的同时清掉已经被回收的 key。写只发生在缓存未命中时，次数和 class 数量同阶。
+ * <p>
+ * 注意 value 如果强引用了 key 对应的 class（例如 Constructor），class 依旧无法被卸载，
+ * 这种 value 需要调用方自己用软引用或弱引用包一层。
+ */
+final class WeakClassMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final class Entry<V> extends WeakReference<Class<?>> {
+        final int mHash;
+        final V mValue;
+
+        Entry(Class<?> key, int hash, V value) {
+            super(key);
+            mHash = hash;
+            mValue = value;
+        }
+    }
+
+    // 长度总是 2 的幂，负载不超过一半，保证线性探测一定能遇到空槽
+    private volatile Entry<V>[] mTable = newTable(MIN_CAPACITY);
+    private int mSize;
+
+    @Nullable
+    V get(@NonNull Class<?> key) {
+        Entry<V>[] table = mTable;
+        int mask = table.length - 1;
+        int i = System.identityHashCode(key) & mask;
+        Entry<V> e;
+        while ((e = table[i]) != null) {
+            if (e.get() == key) {
+                return e.mValue;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    synchronized void put(@NonNull Class<?> key, @NonNull V value) {
+        Entry<V>[] old = mTable;
+        int live = 0;
+        for (Entry<V> e : old) {
+            if (e != null && e.get() != null && e.get() != key) {
+                live++;
+            }
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < (live + 1) * 2) {
+            capacity <<= 1;
+        }
+        Entry<V>[] table = newTable(capacity);
+        for (Entry<V> e : old) {
+            Class<?> k;
+            if (e != null && (k = e.get()) != null && k != key) {
+                insert(table, e);
+            }
+        }
+        insert(table, new Entry<>(key, System.identityHashCode(key), value));
+        mSize = live + 1;
+        mTable = table;
+    }
+
+    synchronized int size() {
+        return mSize;
+    }
+
+    private static <V> void insert(Entry<V>[] table, Entry<V> entry) {
+        int mask = table.length - 1;
+        int i = entry.mHash & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Entry<V>[] newTable(int capacity) {
+        return (Entry<V>[]) new Entry[capacity];
+    }
+}
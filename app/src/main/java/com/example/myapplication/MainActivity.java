@@ -52,6 +52,8 @@ public class MainActivity extends AppCompatActivity {
 
     private void initView() {
         TestFragment mTestFragment = new TestFragment();
+        // 提交事务前在后台线程开始 inflate Fragment 的布局，TestFragment.onCreateView 中取用
+        preinflateFragmentView(mTestFragment, R.layout.fragment_blank, R.id.frame_layout);
         getSupportFragmentManager().beginTransaction().add(R.id.frame_layout,mTestFragment).commit();
     }
 
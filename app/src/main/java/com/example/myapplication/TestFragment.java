@@ -45,7 +45,9 @@ public class TestFragment extends Fragment {
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
         Log.e(TAG,"*********  onCreateView  ********");
-        return inflater.inflate(R.layout.fragment_blank, container, false);
+        // 优先使用 MainActivity 预先在后台 inflate 好的布局，没有或者还没好时同步 inflate
+        return requireActivity().inflateFragmentView(this, inflater, R.layout.fragment_blank,
+                container);
     }
 
     @Override
@@ -2,6 +2,10 @@ package com.example.myapplication.app;
 
 import android.app.Application;
 
+import androidx.lifecycle.ViewModelPreloader;
+
+import com.example.myapplication.viewmodel.MainViewModel;
+
 public class MyApplication extends Application {
 
     @Override
@@ -13,5 +17,11 @@ public class MyApplication extends Application {
                 .setLogType(LogUtil.TYPE.E)
                 .setTag("fly");
         LogUtil.init(builder);
+
+        // 后台预先创建首页的 ViewModel，MainActivity.onCreate 中直接领取。
+        // 冷启动时 Activity 的启动消息已经在队列里，等主线程空闲再创建就来不及了
+        ViewModelPreloader.install(this)
+                .preload(MainViewModel.class)
+                .startInBackground();
     }
 }
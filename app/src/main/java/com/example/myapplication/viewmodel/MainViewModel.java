@@ -4,6 +4,7 @@ import android.app.Application;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.GenerateViewModelFactory;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
@@ -11,6 +12,7 @@ import androidx.lifecycle.ViewModel;
 /**
  * Created by fei.wang on 2019/3/24.
  */
+@GenerateViewModelFactory
 public class MainViewModel extends ViewModel {
 
     private final MutableLiveData<String> mainLiveData = new MutableLiveData<>();
@@ -0,0 +1,202 @@
+package androidx.fragment.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncViewInflaterTest {
+
+    private final List<Runnable> mQueue = new ArrayList<>();
+    private final Executor mManualExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            mQueue.add(command);
+        }
+    };
+
+    private void runQueued() {
+        for (Runnable runnable : mQueue) {
+            runnable.run();
+        }
+        mQueue.clear();
+    }
+
+    private static Callable<Object> returning(final Object view, final AtomicInteger calls) {
+        return new Callable<Object>() {
+            @Override
+            public Object call() {
+                calls.incrementAndGet();
+                return view;
+            }
+        };
+    }
+
+    @Test
+    public void finishedInflationIsHandedOver() {
+        AsyncViewInflater<Object> inflater = new AsyncViewInflater<>(mManualExecutor, 0);
+        Object view = new Object();
+        AtomicInteger calls = new AtomicInteger();
+        assertTrue(inflater.submit("who", 1, returning(view, calls)));
+        runQueued();
+        assertSame(view, inflater.take("who", 1));
+        assertEquals(1, inflater.getHits());
+        assertEquals(0, inflater.getPendingCount());
+        // Taken once only
+        assertNull(inflater.take("who", 1));
+        assertEquals(1, inflater.getHits());
+        assertEquals(0, inflater.getFallbacks());
+    }
+
+    @Test
+    public void notStartedFallsBackAndNeverRuns() {
+        AsyncViewInflater<Object> inflater = new AsyncViewInflater<>(mManualExecutor, 0);
+        AtomicInteger calls = new AtomicInteger();
+        inflater.submit("who", 1, returning(new Object(), calls));
+        assertNull(inflater.take("who", 1));
+        runQueued();
+        assertEquals(0, calls.get());
+        assertEquals(1, inflater.getFallbacks());
+    }
+
+    @Test
+    public void differentLayoutFallsBack() {
+        AsyncViewInflater<Object> inflater = new AsyncViewInflater<>(mManualExecutor, 0);
+        inflater.submit("who", 1, returning(new Object(), new AtomicInteger()));
+        runQueued();
+        assertNull(inflater.take("who", 2));
+        assertEquals(1, inflater.getFallbacks());
+    }
+
+    @Test
+    public void failedInflationFallsBack() {
+        AsyncViewInflater<Object> inflater = new AsyncViewInflater<>(mManualExecutor, 0);
+        inflater.submit("who", 1, new Callable<Object>() {
+            @Override
+            public Object call() {
+                throw new RuntimeException("Can't create handler inside thread");
+            }
+        });
+        runQueued();
+        assertNull(inflater.take("who", 1));
+        assertEquals(1, inflater.getFallbacks());
+    }
+
+    @Test
+    public void resubmitReplacesEarlierRequest() {
+        AsyncViewInflater<Object> inflater = new AsyncViewInflater<>(mManualExecutor, 0);
+        AtomicInteger firstCalls = new AtomicInteger();
+        Object second = new Object();
+        inflater.submit("who", 1, returning(new Object(), firstCalls));
+        inflater.submit("who", 1, returning(second, new AtomicInteger()));
+        runQueued();
+        assertEquals(0, firstCalls.get());
+        assertSame(second, inflater.take("who", 1));
+    }
+
+    @Test
+    public void cancelAndClearDropRequests() {
+        AsyncViewInflater<Object> inflater = new AsyncViewInflater<>(mManualExecutor, 0);
+        AtomicInteger calls = new AtomicInteger();
+        inflater.submit("a", 1, returning(new Object(), calls));
+        inflater.submit("b", 1, returning(new Object(), calls));
+        inflater.submit("c", 1, returning(new Object(), calls));
+        assertTrue(inflater.cancel("a"));
+        assertFalse(inflater.cancel("a"));
+        inflater.clear();
+        assertEquals(0, inflater.getPendingCount());
+        runQueued();
+        assertEquals(0, calls.get());
+        assertNull(inflater.take("b", 1));
+        assertEquals(0, inflater.getFallbacks());
+    }
+
+    @Test
+    public void rejectedSubmitIsNotPending() {
+        AsyncViewInflater<Object> inflater = new AsyncViewInflater<>(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        }, 0);
+        assertFalse(inflater.submit("who", 1, returning(new Object(), new AtomicInteger())));
+        assertEquals(0, inflater.getPendingCount());
+    }
+
+    @Test
+    public void takeWaitsForInflationInProgress() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Object view = new Object();
+        AsyncViewInflater<Object> inflater = new AsyncViewInflater<>(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                new Thread(command).start();
+            }
+        }, TimeUnit.SECONDS.toMillis(10));
+        inflater.submit("who", 1, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                started.countDown();
+                release.await();
+                return view;
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ignored) {
+                }
+                release.countDown();
+            }
+        }).start();
+        assertSame(view, inflater.take("who", 1));
+    }
+
+    @Test
+    public void takeFallsBackWhenInflationIsTooSlow() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        AsyncViewInflater<Object> inflater = new AsyncViewInflater<>(new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        command.run();
+                        finished.countDown();
+                    }
+                }).start();
+            }
+        }, 10);
+        inflater.submit("who", 1, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                started.countDown();
+                release.await();
+                return new Object();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertNull(inflater.take("who", 1));
+        assertEquals(1, inflater.getFallbacks());
+        release.countDown();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,103 @@
+package androidx.fragment.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class FragmentTreeMarkerTest {
+
+    static final class Node {
+        final String mName;
+        boolean mStarted = true;
+        List<Node> mChildren;
+        Runnable mOnMarked;
+
+        Node(String name) {
+            mName = name;
+        }
+
+        Node add(Node child) {
+            if (mChildren == null) {
+                mChildren = new ArrayList<>();
+            }
+            mChildren.add(child);
+            return this;
+        }
+    }
+
+    // Nodes double as fragments and as their child fragment managers
+    private final List<String> mVisited = new ArrayList<>();
+    private final FragmentTreeMarker.Tree<Node, Node> mTree =
+            new FragmentTreeMarker.Tree<Node, Node>() {
+                @Override
+                public Collection<Node> getFragments(Node manager) {
+                    return new ArrayList<>(manager.mChildren);
+                }
+
+                @Override
+                public Node getChildManager(Node fragment) {
+                    return fragment.mChildren != null ? fragment : null;
+                }
+
+                @Override
+                public boolean markIfStarted(Node fragment) {
+                    mVisited.add(fragment.mName);
+                    if (!fragment.mStarted) {
+                        return false;
+                    }
+                    fragment.mStarted = false;
+                    if (fragment.mOnMarked != null) {
+                        fragment.mOnMarked.run();
+                    }
+                    return true;
+                }
+            };
+
+    @Test
+    public void visitsInPreOrder() {
+        Node root = new Node("root")
+                .add(new Node("a").add(new Node("a1")).add(new Node("a2").add(new Node("a21"))))
+                .add(new Node("b"))
+                .add(new Node("c").add(new Node("c1")));
+        root.mChildren.get(1).mStarted = false;
+
+        assertEquals(6, new FragmentTreeMarker<>(mTree).mark(root));
+        assertEquals("[a, a1, a2, a21, b, c, c1]", mVisited.toString());
+    }
+
+    @Test
+    public void childAddedWhileMarkingParentIsMarkedInSamePass() {
+        final Node parent = new Node("parent").add(new Node("existing"));
+        parent.mOnMarked = new Runnable() {
+            @Override
+            public void run() {
+                parent.add(new Node("added"));
+            }
+        };
+        Node root = new Node("root").add(parent);
+
+        FragmentTreeMarker<Node, Node> marker = new FragmentTreeMarker<>(mTree);
+        assertEquals(3, marker.mark(root));
+        assertFalse(parent.mChildren.get(1).mStarted);
+        // Fixed point after one pass
+        assertEquals(0, marker.mark(root));
+    }
+
+    @Test
+    public void deepTreeDoesNotOverflow() {
+        Node root = new Node("root");
+        Node node = root;
+        for (int i = 0; i < 100000; i++) {
+            Node child = new Node("n" + i);
+            node.add(child);
+            node = child;
+        }
+        assertEquals(100000, new FragmentTreeMarker<>(mTree).mark(root));
+        assertEquals(100000, mVisited.size());
+    }
+}
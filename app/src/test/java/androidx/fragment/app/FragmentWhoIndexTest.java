@@ -0,0 +1,33 @@
+package androidx.fragment.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class FragmentWhoIndexTest {
+
+    @Test
+    public void attachAndDetach() {
+        FragmentWhoIndex<Object> index = new FragmentWhoIndex<>();
+        Object first = new Object();
+        index.add("who", first);
+        assertSame(first, index.get("who"));
+        index.remove("who", first);
+        assertNull(index.get("who"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void staleDetachKeepsNewFragment() {
+        FragmentWhoIndex<Object> index = new FragmentWhoIndex<>();
+        Object old = new Object();
+        Object recreated = new Object();
+        // A restored fragment with the same who attaches before the old one is detached
+        index.add("who", old);
+        index.add("who", recreated);
+        index.remove("who", old);
+        assertSame(recreated, index.get("who"));
+    }
+}
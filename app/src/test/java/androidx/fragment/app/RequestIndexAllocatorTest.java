@@ -0,0 +1,110 @@
+package androidx.fragment.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class RequestIndexAllocatorTest {
+
+    private static final int CAPACITY = FragmentActivity.MAX_NUM_PENDING_FRAGMENT_ACTIVITY_RESULTS;
+
+    // The linear probing FragmentActivity used before, as the reference behaviour
+    private static final class Probing {
+        final TreeSet<Integer> mAllocated = new TreeSet<>();
+        final int mCapacity;
+        int mNextCandidate;
+
+        Probing(int capacity) {
+            mCapacity = capacity;
+        }
+
+        int allocate() {
+            while (mAllocated.contains(mNextCandidate)) {
+                mNextCandidate = (mNextCandidate + 1) % mCapacity;
+            }
+            int index = mNextCandidate;
+            mAllocated.add(index);
+            mNextCandidate = (mNextCandidate + 1) % mCapacity;
+            return index;
+        }
+    }
+
+    @Test
+    public void matchesLinearProbing() {
+        for (int capacity : new int[]{1, 63, 64, 65, 200, CAPACITY}) {
+            Random random = new Random(capacity);
+            RequestIndexAllocator allocator = new RequestIndexAllocator(capacity);
+            Probing probing = new Probing(capacity);
+            List<Integer> outstanding = new ArrayList<>();
+            for (int i = 0; i < 20000; i++) {
+                if (outstanding.size() < capacity && (outstanding.isEmpty() || random.nextInt(3) > 0)) {
+                    int index = allocator.allocate();
+                    assertEquals(probing.allocate(), index);
+                    outstanding.add(index);
+                } else {
+                    int index = outstanding.remove(random.nextInt(outstanding.size()));
+                    assertTrue(allocator.release(index));
+                    probing.mAllocated.remove(index);
+                }
+                assertEquals(probing.mAllocated.size(), allocator.size());
+                assertEquals(probing.mNextCandidate, allocator.getNextCandidate());
+            }
+        }
+    }
+
+    @Test
+    public void fillsEveryIndexThenFails() {
+        RequestIndexAllocator allocator = new RequestIndexAllocator(CAPACITY);
+        boolean[] seen = new boolean[CAPACITY];
+        for (int i = 0; i < CAPACITY; i++) {
+            int index = allocator.allocate();
+            assertFalse(seen[index]);
+            seen[index] = true;
+        }
+        try {
+            allocator.allocate();
+            throw new AssertionError("Expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // all 16-bit request indices are in use
+        }
+        assertTrue(allocator.release(CAPACITY - 1));
+        assertEquals(CAPACITY - 1, allocator.allocate());
+        assertFalse(allocator.release(CAPACITY));
+    }
+
+    @Test
+    public void restoreFromSavedState() {
+        RequestIndexAllocator allocator = new RequestIndexAllocator(CAPACITY);
+        for (int i = 0; i < 3000; i++) {
+            allocator.allocate();
+        }
+        for (int i = 0; i < 3000; i += 3) {
+            allocator.release(i);
+        }
+        // What onSaveInstanceState writes
+        int nextCandidate = allocator.getNextCandidate();
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < CAPACITY; i++) {
+            if (allocator.isAllocated(i)) {
+                indices.add(i);
+            }
+        }
+
+        RequestIndexAllocator restored = new RequestIndexAllocator(CAPACITY);
+        for (int index : indices) {
+            assertTrue(restored.markAllocated(index));
+        }
+        restored.setNextCandidate(nextCandidate);
+        assertEquals(allocator.size(), restored.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(allocator.allocate(), restored.allocate());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package androidx.fragment.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResumeFragmentsSchedulerTest {
+
+    private final List<String> mCalls = new ArrayList<>();
+    private Runnable mFrame;
+    private int mPosts;
+
+    private final ResumeFragmentsScheduler mScheduler = new ResumeFragmentsScheduler(
+            new ResumeFragmentsScheduler.Host() {
+                @Override
+                public void resumeFragments() {
+                    mCalls.add("resume");
+                }
+
+                @Override
+                public void execPendingActions() {
+                    mCalls.add("exec");
+                }
+            },
+            new ResumeFragmentsScheduler.FrameClock() {
+                @Override
+                public void postFrameCallback(Runnable callback) {
+                    mFrame = callback;
+                    mPosts++;
+                }
+
+                @Override
+                public void removeFrameCallback(Runnable callback) {
+                    mFrame = null;
+                }
+            });
+
+    private void frame() {
+        Runnable frame = mFrame;
+        mFrame = null;
+        frame.run();
+    }
+
+    @Test
+    public void scheduledResumeRunsOnNextFrame() {
+        mScheduler.schedule();
+        mScheduler.schedule();
+        assertEquals(1, mPosts);
+        assertTrue(mCalls.isEmpty());
+        frame();
+        assertEquals("[resume, exec]", mCalls.toString());
+        assertFalse(mScheduler.isScheduled());
+    }
+
+    @Test
+    public void runNowReplacesScheduledResume() {
+        // onResume
+        mScheduler.schedule();
+        assertTrue(mScheduler.isScheduled());
+        // onPostResume runs the deferred resume right away
+        mScheduler.runNow();
+        assertNull(mFrame);
+        assertEquals("[resume, exec]", mCalls.toString());
+    }
+
+    @Test
+    public void cancelDropsScheduledResume() {
+        mScheduler.schedule();
+        assertTrue(mScheduler.cancel());
+        assertNull(mFrame);
+        assertFalse(mScheduler.cancel());
+        assertTrue(mCalls.isEmpty());
+    }
+}
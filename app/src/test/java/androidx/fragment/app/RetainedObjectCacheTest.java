@@ -0,0 +1,168 @@
+package androidx.fragment.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.regex.Pattern;
+
+public class RetainedObjectCacheTest {
+
+    private static final RetainedObjectCache.SizeEstimator<byte[]> BYTES =
+            new RetainedObjectCache.SizeEstimator<byte[]>() {
+                @Override
+                public long estimateSize(@NonNull byte[] value) {
+                    return value.length;
+                }
+            };
+
+    private static final RetainedObjectCache.SizeEstimator<Object> ONE_KB =
+            new RetainedObjectCache.SizeEstimator<Object>() {
+                @Override
+                public long estimateSize(@NonNull Object value) {
+                    return 1024;
+                }
+            };
+
+    private static RetainedObjectCache.Key<byte[]> bytes(String name) {
+        return RetainedObjectCache.Key.of(name, byte[].class);
+    }
+
+    static final class Resource implements Closeable {
+        boolean mClosed;
+
+        @Override
+        public void close() {
+            mClosed = true;
+        }
+    }
+
+    @Test
+    public void keysAreTyped() {
+        RetainedObjectCache cache = new RetainedObjectCache(10_000);
+        Pattern pattern = Pattern.compile("a+b");
+        RetainedObjectCache.Key<Pattern> patternKey =
+                RetainedObjectCache.Key.of("matcher", Pattern.class);
+        cache.put(patternKey, pattern, ONE_KB);
+        assertSame(pattern, cache.get(RetainedObjectCache.Key.of("matcher", Pattern.class)));
+        // Same name, different type: a different entry
+        assertNull(cache.get(RetainedObjectCache.Key.of("matcher", String.class)));
+        cache.put(RetainedObjectCache.Key.of("matcher", String.class), "a+b", ONE_KB);
+        assertEquals(2, cache.size());
+        assertEquals(2048, cache.getSizeBytes());
+    }
+
+    @Test
+    public void putReplacesAndTracksSize() {
+        RetainedObjectCache cache = new RetainedObjectCache(10_000);
+        byte[] first = new byte[100];
+        assertNull(cache.put(bytes("a"), first, BYTES));
+        assertSame(first, cache.put(bytes("a"), new byte[300], BYTES));
+        assertEquals(300, cache.getSizeBytes());
+        assertEquals(300, cache.remove(bytes("a")).length);
+        assertEquals(0, cache.getSizeBytes());
+        assertNull(cache.remove(bytes("a")));
+    }
+
+    @Test
+    public void trimKeepsEverythingWithinBudget() {
+        RetainedObjectCache cache = new RetainedObjectCache(1000);
+        cache.put(bytes("a"), new byte[400], BYTES);
+        cache.put(bytes("b"), new byte[600], BYTES);
+        cache.trimToBudget();
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void trimEvictsLeastRecentlyUsed() {
+        RetainedObjectCache cache = new RetainedObjectCache(1000);
+        cache.put(bytes("a"), new byte[400], BYTES);
+        cache.put(bytes("b"), new byte[400], BYTES);
+        cache.put(bytes("c"), new byte[400], BYTES);
+        // Touch "a" so "b" is the least recently used
+        cache.get(bytes("a"));
+        cache.trimToBudget();
+        assertNull(cache.get(bytes("b")));
+        assertEquals(400, cache.get(bytes("a")).length);
+        assertEquals(400, cache.get(bytes("c")).length);
+        assertEquals(800, cache.getSizeBytes());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void oversizedEntryIsEvictedAlone() {
+        RetainedObjectCache cache = new RetainedObjectCache(1000);
+        cache.put(bytes("a"), new byte[300], BYTES);
+        cache.put(bytes("b"), new byte[300], BYTES);
+        cache.put(bytes("huge"), new byte[5000], BYTES);
+        cache.trimToBudget();
+        assertNull(cache.get(bytes("huge")));
+        assertEquals(2, cache.size());
+        assertEquals(600, cache.getSizeBytes());
+    }
+
+    @Test
+    public void trimMeasuresAgain() {
+        final StringBuilder template = new StringBuilder("x");
+        RetainedObjectCache cache = new RetainedObjectCache(100);
+        cache.put(RetainedObjectCache.Key.of("template", StringBuilder.class), template,
+                new RetainedObjectCache.SizeEstimator<StringBuilder>() {
+                    @Override
+                    public long estimateSize(@NonNull StringBuilder value) {
+                        return value.length();
+                    }
+                });
+        assertEquals(1, cache.getSizeBytes());
+        for (int i = 0; i < 200; i++) {
+            template.append('x');
+        }
+        cache.trimToBudget();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getSizeBytes());
+    }
+
+    @Test
+    public void evictedAndClearedValuesAreClosed() {
+        RetainedObjectCache cache = new RetainedObjectCache(1024);
+        Resource evicted = new Resource();
+        Resource kept = new Resource();
+        Resource replaced = new Resource();
+        RetainedObjectCache.Key<Resource> keptKey =
+                RetainedObjectCache.Key.of("kept", Resource.class);
+        cache.put(RetainedObjectCache.Key.of("evicted", Resource.class), evicted, ONE_KB);
+        cache.put(keptKey, replaced, ONE_KB);
+        assertSame(replaced, cache.put(keptKey, kept, ONE_KB));
+        cache.trimToBudget();
+        assertTrue(evicted.mClosed);
+        assertFalse(kept.mClosed);
+        assertFalse(replaced.mClosed);
+        cache.clear();
+        assertTrue(kept.mClosed);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void negativeSizeIsRejected() {
+        RetainedObjectCache cache = new RetainedObjectCache(1024);
+        try {
+            cache.put(bytes("a"), new byte[1], new RetainedObjectCache.SizeEstimator<byte[]>() {
+                @Override
+                public long estimateSize(@NonNull byte[] value) {
+                    return -1;
+                }
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,99 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncTeardownTest {
+
+    static class RecordingReporter implements AsyncTeardown.Reporter {
+        final CountDownLatch mFailed = new CountDownLatch(1);
+        final CountDownLatch mSlow = new CountDownLatch(1);
+        final CountDownLatch mTimeout = new CountDownLatch(1);
+
+        @Override
+        public void onCloseFailed(@NonNull Closeable closeable, @NonNull Throwable error) {
+            mFailed.countDown();
+        }
+
+        @Override
+        public void onCloseSlow(@NonNull Closeable closeable, long durationMillis) {
+            mSlow.countDown();
+        }
+
+        @Override
+        public void onCloseTimeout(@NonNull Closeable closeable, long timeoutMillis) {
+            mTimeout.countDown();
+        }
+    }
+
+    static class TaggedViewModel extends ViewModel {
+        volatile Thread mClearedOn;
+
+        @Override
+        protected void onCleared() {
+            mClearedOn = Thread.currentThread();
+        }
+    }
+
+    @Test
+    public void closesOffCallingThreadAndReports() throws Exception {
+        RecordingReporter reporter = new RecordingReporter();
+        ViewModelStore store = new ViewModelStore();
+        store.setAsyncTeardown(new AsyncTeardown(Executors.newCachedThreadPool(), 20, 100,
+                reporter));
+
+        final Thread[] closedOn = new Thread[1];
+        final CountDownLatch closed = new CountDownLatch(1);
+        TaggedViewModel viewModel = new TaggedViewModel();
+        viewModel.setTagIfAbsent("ok", new Closeable() {
+            @Override
+            public void close() {
+                closedOn[0] = Thread.currentThread();
+                closed.countDown();
+            }
+        });
+        viewModel.setTagIfAbsent("failing", new Closeable() {
+            @Override
+            public void close() throws IOException {
+                throw new IOException("boom");
+            }
+        });
+        viewModel.setTagIfAbsent("hanging", new Closeable() {
+            @Override
+            public void close() {
+                sleep(300);
+            }
+        });
+        store.put("key", viewModel);
+
+        store.clear();
+
+        assertSame(Thread.currentThread(), viewModel.mClearedOn);
+        assertTrue(closed.await(1, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), closedOn[0]);
+        assertTrue(reporter.mFailed.await(1, TimeUnit.SECONDS));
+        assertTrue(reporter.mTimeout.await(1, TimeUnit.SECONDS));
+        assertTrue(reporter.mSlow.await(1, TimeUnit.SECONDS));
+        assertEquals(0, store.size());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentCallbacks2;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+public class BoundedViewModelStoreTest {
+
+    static class ClearedViewModel extends ViewModel {
+        boolean mCleared;
+
+        @Override
+        protected void onCleared() {
+            mCleared = true;
+        }
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        BoundedViewModelStore store = new BoundedViewModelStore(3);
+        ClearedViewModel[] viewModels = new ClearedViewModel[4];
+        for (int i = 0; i < 3; i++) {
+            viewModels[i] = new ClearedViewModel();
+            store.put("tab" + i, viewModels[i]);
+        }
+        // tab0 变成最近使用，tab1 成为最久未使用
+        assertNotNull(store.get("tab0"));
+        viewModels[3] = new ClearedViewModel();
+        store.put("tab3", viewModels[3]);
+
+        assertNull(store.get("tab1"));
+        assertTrue(viewModels[1].mCleared);
+        assertEquals(3, store.size());
+        assertEquals(1, store.getEvictionCount());
+    }
+
+    @Test
+    public void defaultKeysAreNeverEvicted() {
+        BoundedViewModelStore store = new BoundedViewModelStore(1);
+        String defaultKey = ViewModelProvider.getDefaultKey(ClearedViewModel.class);
+        store.put(defaultKey, new ClearedViewModel());
+        store.put("tab", new ClearedViewModel());
+        store.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertNotNull(store.get(defaultKey));
+        assertNull(store.get("tab"));
+    }
+
+    @Test
+    public void weigherAndTrimLevels() {
+        BoundedViewModelStore store = new BoundedViewModelStore(100,
+                new BoundedViewModelStore.Weigher() {
+                    @Override
+                    public int weigh(@NonNull String key, @NonNull ViewModel viewModel) {
+                        return 10;
+                    }
+                });
+        for (int i = 0; i < 10; i++) {
+            store.put("tab" + i, new ClearedViewModel());
+        }
+        assertEquals(100, store.getWeight());
+        store.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(70, store.getWeight());
+        store.trimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(50, store.getWeight());
+        store.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        assertEquals(20, store.getWeight());
+        store.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertEquals(0, store.getWeight());
+        assertEquals(0, store.size());
+    }
+}
@@ -0,0 +1,166 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentViewModelStoreTest {
+
+    private static final int THREADS = 8;
+
+    static final AtomicInteger sCloseCount = new AtomicInteger();
+
+    public static class SlowViewModel extends ViewModel {
+        public SlowViewModel() {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            setTagIfAbsent("closeable", new Closeable() {
+                @Override
+                public void close() {
+                    sCloseCount.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    static class CountingFactory extends ViewModelProvider.NewInstanceFactory {
+        final AtomicInteger mCreated = new AtomicInteger();
+
+        @NonNull
+        @Override
+        public <T extends ViewModel> T create(@NonNull Class<T> modelClass) {
+            mCreated.incrementAndGet();
+            return super.create(modelClass);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getConcurrentRequiresConcurrentStore() {
+        new ViewModelProvider(new ViewModelStore(), new ViewModelProvider.NewInstanceFactory())
+                .getConcurrent(SlowViewModel.class);
+    }
+
+    @Test
+    public void sameKeyCreatedOnce() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            final ConcurrentViewModelStore store = new ConcurrentViewModelStore();
+            final CountingFactory factory = new CountingFactory();
+            final SlowViewModel[] results = new SlowViewModel[THREADS];
+            runConcurrently(new Task() {
+                @Override
+                public void run(int index) {
+                    results[index] = new ViewModelProvider(store, factory).getConcurrent(SlowViewModel.class);
+                }
+            });
+            assertEquals(1, factory.mCreated.get());
+            for (SlowViewModel result : results) {
+                assertSame(results[0], result);
+            }
+        }
+    }
+
+    @Test
+    public void clearClosesEveryEntryOnce() throws Exception {
+        sCloseCount.set(0);
+        final ConcurrentViewModelStore store = new ConcurrentViewModelStore();
+        final CountingFactory factory = new CountingFactory();
+        final CountDownLatch started = new CountDownLatch(1);
+        Thread clearer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    started.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                store.clear();
+            }
+        };
+        clearer.start();
+        runConcurrently(new Task() {
+            @Override
+            public void run(int index) {
+                ViewModelProvider provider = new ViewModelProvider(store, factory);
+                for (int i = 0; i < 20; i++) {
+                    provider.getConcurrent("key" + (i % 10), SlowViewModel.class);
+                    started.countDown();
+                }
+            }
+        });
+        clearer.join();
+        store.clear();
+        assertEquals(factory.mCreated.get(), sCloseCount.get());
+        assertEquals(0, store.size());
+    }
+
+    public static class OtherViewModel extends ViewModel {
+    }
+
+    @Test
+    public void failedReplacementKeepsOldViewModel() {
+        ConcurrentViewModelStore store = new ConcurrentViewModelStore();
+        SlowViewModel old = new ViewModelProvider(store,
+                new ViewModelProvider.NewInstanceFactory()).get("key", SlowViewModel.class);
+        ViewModelProvider failing = new ViewModelProvider(store, new ViewModelProvider.Factory() {
+            @NonNull
+            @Override
+            public <T extends ViewModel> T create(@NonNull Class<T> modelClass) {
+                throw new IllegalStateException("factory failed");
+            }
+        });
+        try {
+            failing.get("key", OtherViewModel.class);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertSame(old, store.get("key"));
+        assertEquals(1, store.size());
+    }
+
+    interface Task {
+        void run(int index);
+    }
+
+    private static void runConcurrently(final Task task) throws Exception {
+        final CountDownLatch go = new CountDownLatch(1);
+        final List<Throwable> errors = new ArrayList<>();
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        go.await();
+                        task.run(index);
+                    } catch (Throwable t) {
+                        synchronized (errors) {
+                            errors.add(t);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!errors.isEmpty()) {
+            throw new AssertionError(errors.get(0));
+        }
+    }
+}
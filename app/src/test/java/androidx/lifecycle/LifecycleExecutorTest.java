@@ -0,0 +1,257 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LifecycleExecutorTest {
+
+    private final List<Runnable> mPool = new ArrayList<>();
+    private final Executor mManualExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            mPool.add(command);
+        }
+    };
+
+    private void runPool() {
+        List<Runnable> commands = new ArrayList<>(mPool);
+        mPool.clear();
+        for (Runnable command : commands) {
+            command.run();
+        }
+    }
+
+    private static Runnable appending(final List<String> log, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                log.add(name);
+            }
+        };
+    }
+
+    // 直接按事件回调观察者，代替 LifecycleRegistry
+    static final class TestOwner extends Lifecycle implements LifecycleOwner {
+        final List<LifecycleObserver> mObservers = new ArrayList<>();
+        State mState;
+
+        TestOwner(State state) {
+            mState = state;
+        }
+
+        @NonNull
+        @Override
+        public Lifecycle getLifecycle() {
+            return this;
+        }
+
+        @Override
+        public void addObserver(@NonNull LifecycleObserver observer) {
+            mObservers.add(observer);
+            if (mState.isAtLeast(State.STARTED)) {
+                ((LifecycleEventObserver) observer).onStateChanged(this, Event.ON_START);
+            }
+        }
+
+        @Override
+        public void removeObserver(@NonNull LifecycleObserver observer) {
+            mObservers.remove(observer);
+        }
+
+        @NonNull
+        @Override
+        public State getCurrentState() {
+            return mState;
+        }
+
+        void dispatch(Event event, State state) {
+            mState = state;
+            for (LifecycleObserver observer : new ArrayList<>(mObservers)) {
+                ((LifecycleEventObserver) observer).onStateChanged(this, event);
+            }
+        }
+    }
+
+    @Test
+    public void queuesUntilStartedInOrder() {
+        LifecycleExecutor executor = new LifecycleExecutor(mManualExecutor);
+        List<String> log = new ArrayList<>();
+        executor.execute(appending(log, "a"));
+        executor.execute(appending(log, "b"));
+        assertEquals(2, executor.getQueuedTaskCount());
+        assertEquals(2, executor.getDeferredTaskCount());
+        assertTrue(mPool.isEmpty());
+
+        executor.start();
+        assertEquals(0, executor.getQueuedTaskCount());
+        assertEquals(2, executor.getActiveTaskCount());
+        runPool();
+        assertEquals("[a, b]", log.toString());
+        assertEquals(0, executor.getActiveTaskCount());
+
+        // 启动后直接交给线程池
+        executor.execute(appending(log, "c"));
+        assertEquals(0, executor.getQueuedTaskCount());
+        runPool();
+        assertEquals("[a, b, c]", log.toString());
+        assertEquals(2, executor.getDeferredTaskCount());
+    }
+
+    @Test
+    public void stopQueuesAgain() {
+        LifecycleExecutor executor = new LifecycleExecutor(mManualExecutor);
+        executor.start();
+        executor.stop();
+        List<String> log = new ArrayList<>();
+        executor.execute(appending(log, "a"));
+        assertEquals(1, executor.getQueuedTaskCount());
+        assertTrue(mPool.isEmpty());
+        executor.start();
+        runPool();
+        assertEquals("[a]", log.toString());
+    }
+
+    @Test
+    public void cancelledWhileQueuedLeavesQueue() {
+        LifecycleExecutor executor = new LifecycleExecutor(mManualExecutor);
+        List<String> log = new ArrayList<>();
+        Future<?> future = executor.launch(appending(log, "a"));
+        future.cancel(false);
+        assertEquals(0, executor.getQueuedTaskCount());
+        executor.start();
+        runPool();
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    public void closeCancelsQueuedAndRejectsNew() {
+        LifecycleExecutor executor = new LifecycleExecutor(mManualExecutor);
+        List<String> log = new ArrayList<>();
+        Future<?> queued = executor.launch(appending(log, "a"));
+        executor.close();
+        assertTrue(queued.isCancelled());
+        assertTrue(executor.isClosed());
+        Future<?> late = executor.launch(appending(log, "b"));
+        assertTrue(late.isCancelled());
+        executor.start();
+        assertFalse(executor.isStarted());
+        runPool();
+        assertTrue(log.isEmpty());
+        assertEquals(0, executor.getQueuedTaskCount());
+    }
+
+    @Test
+    public void followsOwnerLifecycle() {
+        TestOwner owner = new TestOwner(Lifecycle.State.CREATED);
+        LifecycleExecutor executor = new LifecycleExecutor(owner, mManualExecutor);
+        assertFalse(executor.isStarted());
+        owner.dispatch(Lifecycle.Event.ON_START, Lifecycle.State.STARTED);
+        assertTrue(executor.isStarted());
+        owner.dispatch(Lifecycle.Event.ON_STOP, Lifecycle.State.CREATED);
+        assertFalse(executor.isStarted());
+        owner.dispatch(Lifecycle.Event.ON_DESTROY, Lifecycle.State.DESTROYED);
+        assertTrue(executor.isClosed());
+        assertTrue(owner.mObservers.isEmpty());
+    }
+
+    @Test
+    public void startedOwnerRunsImmediately() {
+        TestOwner owner = new TestOwner(Lifecycle.State.RESUMED);
+        LifecycleExecutor executor = new LifecycleExecutor(owner, mManualExecutor);
+        assertTrue(executor.isStarted());
+        executor.execute(appending(new ArrayList<String>(), "a"));
+        assertEquals(1, mPool.size());
+    }
+
+    @Test
+    public void destroyedOwnerIsClosed() {
+        TestOwner owner = new TestOwner(Lifecycle.State.DESTROYED);
+        LifecycleExecutor executor = new LifecycleExecutor(owner, mManualExecutor);
+        assertTrue(executor.isClosed());
+        assertTrue(owner.mObservers.isEmpty());
+    }
+
+    @Test
+    public void runningTaskPriorityFollowsLifecycle() throws Exception {
+        final LifecycleExecutor executor = new LifecycleExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                new Thread(command).start();
+            }
+        });
+        executor.start();
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final CountDownLatch restarted = new CountDownLatch(1);
+        final AtomicInteger whileStopped = new AtomicInteger();
+        final AtomicInteger afterStart = new AtomicInteger();
+        final AtomicInteger normal = new AtomicInteger();
+        Future<?> future = executor.launch(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    normal.set(Thread.currentThread().getPriority());
+                    running.countDown();
+                    stopped.await();
+                    whileStopped.set(Thread.currentThread().getPriority());
+                    restarted.await();
+                    afterStart.set(Thread.currentThread().getPriority());
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        executor.stop();
+        stopped.countDown();
+        // 等任务读取到降低后的优先级再恢复
+        while (whileStopped.get() == 0) {
+            Thread.sleep(1);
+        }
+        executor.start();
+        restarted.countDown();
+        future.get(10, TimeUnit.SECONDS);
+        assertEquals(Thread.MIN_PRIORITY, whileStopped.get());
+        assertEquals(normal.get(), afterStart.get());
+    }
+
+    @Test
+    public void closeInterruptsRunningTask() throws Exception {
+        LifecycleExecutor executor = new LifecycleExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                new Thread(command).start();
+            }
+        });
+        executor.start();
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        executor.launch(new Runnable() {
+            @Override
+            public void run() {
+                running.countDown();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        });
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        executor.close();
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    }
+}
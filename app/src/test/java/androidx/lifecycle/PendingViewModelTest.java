@@ -0,0 +1,191 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PendingViewModelTest {
+
+    static final AtomicInteger sCreated = new AtomicInteger();
+    static volatile SlowViewModel sLastCreated;
+    // 测试通过它控制构造函数何时返回
+    static volatile CountDownLatch sConstructorGate;
+
+    public static class SlowViewModel extends ViewModel {
+        volatile boolean mCleared;
+
+        public SlowViewModel() {
+            sLastCreated = this;
+            sCreated.incrementAndGet();
+            CountDownLatch gate = sConstructorGate;
+            if (gate != null) {
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        protected void onCleared() {
+            mCleared = true;
+        }
+    }
+
+    /**
+     * 模拟主线程的消息队列，由测试线程手动执行。
+     */
+    static class MainQueue implements Executor {
+        final LinkedBlockingQueue<Runnable> mQueue = new LinkedBlockingQueue<>();
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            mQueue.add(command);
+        }
+
+        void runNext() throws InterruptedException {
+            Runnable runnable = mQueue.poll(5, TimeUnit.SECONDS);
+            assertTrue(runnable != null);
+            runnable.run();
+        }
+    }
+
+    static class RecordingCallback implements PendingViewModel.Callback<SlowViewModel> {
+        SlowViewModel mReady;
+        Throwable mFailed;
+
+        @Override
+        public void onViewModelReady(@NonNull SlowViewModel viewModel) {
+            mReady = viewModel;
+        }
+
+        @Override
+        public void onViewModelFailed(@NonNull Throwable error) {
+            mFailed = error;
+        }
+    }
+
+    private final MainQueue mMain = new MainQueue();
+
+    @Before
+    public void setUp() {
+        sCreated.set(0);
+        sConstructorGate = null;
+        PendingViewModel.sMainThreadExecutor = mMain;
+    }
+
+    @After
+    public void tearDown() {
+        sConstructorGate = null;
+        PendingViewModel.sMainThreadExecutor = null;
+    }
+
+    @Test
+    public void createsInBackgroundAndPublishes() throws Exception {
+        ViewModelStore store = new ViewModelStore();
+        ViewModelProvider provider = new ViewModelProvider(store,
+                new ViewModelProvider.NewInstanceFactory());
+        sConstructorGate = new CountDownLatch(1);
+
+        PendingViewModel<SlowViewModel> first = provider.getAsync(SlowViewModel.class);
+        PendingViewModel<SlowViewModel> second = provider.getAsync(SlowViewModel.class);
+        assertSame(first, second);
+        RecordingCallback callback = new RecordingCallback();
+        first.addCallback(callback);
+        assertFalse(first.isDone());
+        assertEquals(0, store.size());
+
+        sConstructorGate.countDown();
+        // 发布
+        mMain.runNext();
+        assertTrue(first.isDone());
+        SlowViewModel viewModel = first.get();
+        assertSame(viewModel, provider.get(SlowViewModel.class));
+        assertEquals(1, sCreated.get());
+        // 回调
+        mMain.runNext();
+        assertSame(viewModel, callback.mReady);
+
+        PendingViewModel<SlowViewModel> cached = provider.getAsync(SlowViewModel.class);
+        assertTrue(cached.isDone());
+        assertSame(viewModel, cached.get());
+    }
+
+    @Test
+    public void clearedBeforePublishIsNotLeaked() throws Exception {
+        ViewModelStore store = new ViewModelStore();
+        ViewModelProvider provider = new ViewModelProvider(store,
+                new ViewModelProvider.NewInstanceFactory());
+        sConstructorGate = new CountDownLatch(1);
+
+        PendingViewModel<SlowViewModel> pending = provider.getAsync("key", SlowViewModel.class);
+        RecordingCallback callback = new RecordingCallback();
+        pending.addCallback(callback);
+        while (sCreated.get() == 0) {
+            Thread.sleep(1);
+        }
+        // 构造函数执行期间 owner 销毁
+        store.clear();
+        assertTrue(pending.isCancelled());
+        mMain.runNext();
+        assertTrue(callback.mFailed instanceof CancellationException);
+
+        sConstructorGate.countDown();
+        mMain.runNext();
+        assertEquals(0, store.size());
+        assertNull(store.get("key"));
+        assertTrue(sLastCreated.mCleared);
+    }
+
+    @Test
+    public void syncGetDuringCreationWins() throws Exception {
+        ViewModelStore store = new ViewModelStore();
+        ViewModelProvider provider = new ViewModelProvider(store,
+                new ViewModelProvider.NewInstanceFactory());
+        sConstructorGate = new CountDownLatch(1);
+        PendingViewModel<SlowViewModel> pending = provider.getAsync(SlowViewModel.class);
+        // 后台构造卡住时，主线程同步创建一个
+        CountDownLatch gate = sConstructorGate;
+        sConstructorGate = null;
+        SlowViewModel sync = provider.get(SlowViewModel.class);
+        gate.countDown();
+        mMain.runNext();
+        assertSame(sync, pending.get());
+        assertSame(sync, provider.get(SlowViewModel.class));
+        assertFalse(sync.mCleared);
+    }
+
+    @Test
+    public void concurrentStoreClearedDuringCreation() throws Exception {
+        ConcurrentViewModelStore store = new ConcurrentViewModelStore();
+        ViewModelProvider provider = new ViewModelProvider(store,
+                new ViewModelProvider.NewInstanceFactory());
+        sConstructorGate = new CountDownLatch(1);
+        PendingViewModel<SlowViewModel> pending = provider.getAsync(SlowViewModel.class);
+        while (sCreated.get() == 0) {
+            Thread.sleep(1);
+        }
+        store.clear();
+        sConstructorGate.countDown();
+        mMain.runNext();
+        assertTrue(pending.isCancelled());
+        assertEquals(0, store.size());
+        assertTrue(sLastCreated.mCleared);
+    }
+}
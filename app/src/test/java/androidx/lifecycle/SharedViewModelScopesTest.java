@@ -0,0 +1,96 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+public class SharedViewModelScopesTest {
+
+    public static class FlowViewModel extends ViewModel {
+        boolean mCleared;
+
+        @Override
+        protected void onCleared() {
+            mCleared = true;
+        }
+    }
+
+    /**
+     * 模拟一个 Activity：ViewModelStore 在旋转时保留，finish 时 clear。
+     */
+    static class Participant implements ViewModelStoreOwner {
+        final ViewModelStore mStore;
+
+        Participant() {
+            this(new ViewModelStore());
+        }
+
+        Participant(ViewModelStore store) {
+            mStore = store;
+        }
+
+        @NonNull
+        @Override
+        public ViewModelStore getViewModelStore() {
+            return mStore;
+        }
+
+        FlowViewModel get(String scope) {
+            return new ViewModelProvider(SharedViewModelScopes.join(this, scope),
+                    new ViewModelProvider.NewInstanceFactory()).get(FlowViewModel.class);
+        }
+    }
+
+    @Test
+    public void sharedUntilLastParticipantFinishes() {
+        Participant first = new Participant();
+        Participant second = new Participant();
+        FlowViewModel viewModel = first.get("flow");
+        assertSame(viewModel, second.get("flow"));
+        assertEquals(2, SharedViewModelScopes.getParticipantCount("flow"));
+
+        first.mStore.clear();
+        assertFalse(viewModel.mCleared);
+        assertEquals(1, SharedViewModelScopes.getParticipantCount("flow"));
+
+        second.mStore.clear();
+        assertTrue(viewModel.mCleared);
+        assertEquals(0, SharedViewModelScopes.getParticipantCount("flow"));
+
+        // 之后重新加入是一个新的作用域
+        Participant third = new Participant();
+        assertNotSame(viewModel, third.get("flow"));
+        third.mStore.clear();
+    }
+
+    @Test
+    public void rotationDoesNotRecount() {
+        Participant activity = new Participant();
+        FlowViewModel viewModel = activity.get("rotation");
+        // 重新创建的 Activity 拿到同一个 ViewModelStore
+        Participant recreated = new Participant(activity.mStore);
+        assertSame(viewModel, recreated.get("rotation"));
+        assertSame(viewModel, recreated.get("rotation"));
+        assertEquals(1, SharedViewModelScopes.getParticipantCount("rotation"));
+
+        recreated.mStore.clear();
+        assertTrue(viewModel.mCleared);
+    }
+
+    @Test
+    public void scopesAreIndependent() {
+        Participant participant = new Participant();
+        FlowViewModel a = participant.get("a");
+        FlowViewModel b = participant.get("b");
+        assertNotSame(a, b);
+        participant.mStore.clear();
+        assertTrue(a.mCleared);
+        assertTrue(b.mCleared);
+    }
+}
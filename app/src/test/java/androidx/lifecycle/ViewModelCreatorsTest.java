@@ -0,0 +1,50 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+/**
+ * ViewModelProvider.get 未命中时按 class 缓存创建方式。
+ * 每次都用新的 ViewModelStore，模拟 Activity 重建后第一次 get；耗时对比见 :viewmodel-benchmark。
+ */
+public class ViewModelCreatorsTest {
+
+    public static class PlainViewModel extends ViewModel {
+        public PlainViewModel() {
+        }
+    }
+
+    public static class AppViewModel extends AndroidViewModel {
+        public AppViewModel(@NonNull Application application) {
+            super(application);
+        }
+    }
+
+    @Test
+    public void missCachesNoArgCreator() {
+        ViewModelProvider.NewInstanceFactory factory = new ViewModelProvider.NewInstanceFactory();
+        ViewModel first = new ViewModelProvider(new ViewModelStore(), factory)
+                .get(PlainViewModel.class);
+        ViewModel second = new ViewModelProvider(new ViewModelStore(), factory)
+                .get(PlainViewModel.class);
+        assertNotSame(first, second);
+        assertEquals(ViewModelCreators.KIND_NO_ARG, ViewModelCreators.getKind(PlainViewModel.class));
+    }
+
+    @Test
+    public void missCachesApplicationCreator() {
+        Application application = new Application();
+        AppViewModel viewModel = new ViewModelProvider(new ViewModelStore(),
+                new ViewModelProvider.AndroidViewModelFactory(application))
+                .get(AppViewModel.class);
+        assertEquals(application, viewModel.getApplication());
+        assertEquals(ViewModelCreators.KIND_APPLICATION_ARG,
+                ViewModelCreators.getKind(AppViewModel.class));
+    }
+}
@@ -0,0 +1,102 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ViewModelLazyTest {
+
+    static final AtomicInteger sCreated = new AtomicInteger();
+
+    public static class TabViewModel extends ViewModel {
+        public TabViewModel() {
+            sCreated.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void createsOnFirstGetAndReusesStoreEntry() {
+        sCreated.set(0);
+        ViewModelStore store = new ViewModelStore();
+        ViewModelProvider provider = new ViewModelProvider(store,
+                new ViewModelProvider.NewInstanceFactory());
+        ViewModelLazy<TabViewModel> lazy = provider.lazy(TabViewModel.class);
+        ViewModelLazy<TabViewModel> keyed = provider.lazy("tab", TabViewModel.class);
+        assertFalse(lazy.isInitialized());
+        assertEquals(0, sCreated.get());
+        assertEquals(0, store.size());
+
+        TabViewModel existing = provider.get(TabViewModel.class);
+        assertSame(existing, lazy.get());
+        assertSame(existing, lazy.get());
+        assertTrue(lazy.isInitialized());
+        assertEquals(1, sCreated.get());
+
+        TabViewModel tab = keyed.get();
+        assertSame(tab, provider.get("tab", TabViewModel.class));
+        assertEquals(2, sCreated.get());
+    }
+
+    @Test
+    public void clearedValueIsResolvedAgain() {
+        BoundedViewModelStore store = new BoundedViewModelStore(1);
+        ViewModelProvider provider = new ViewModelProvider(store,
+                new ViewModelProvider.NewInstanceFactory());
+        ViewModelLazy<TabViewModel> lazy = provider.lazy("tab", TabViewModel.class);
+        TabViewModel first = lazy.get();
+
+        // 被淘汰
+        provider.get("other", TabViewModel.class);
+        assertFalse(lazy.isInitialized());
+        TabViewModel second = lazy.get();
+        assertNotSame(first, second);
+        assertSame(second, provider.get("tab", TabViewModel.class));
+
+        store.clear();
+        assertFalse(lazy.isInitialized());
+        assertNotSame(second, lazy.get());
+    }
+
+    @Test
+    public void concurrentFirstGetResolvesOnce() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            sCreated.set(0);
+            ViewModelProvider provider = new ViewModelProvider(new ConcurrentViewModelStore(),
+                    new ViewModelProvider.NewInstanceFactory());
+            final ViewModelLazy<TabViewModel> lazy = provider.lazy(TabViewModel.class);
+            final Object[] results = new Object[4];
+            final CountDownLatch go = new CountDownLatch(1);
+            Thread[] threads = new Thread[results.length];
+            for (int i = 0; i < threads.length; i++) {
+                final int index = i;
+                threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            go.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        results[index] = lazy.getConcurrent();
+                    }
+                };
+                threads[i].start();
+            }
+            go.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            for (Object result : results) {
+                assertSame(results[0], result);
+            }
+            assertEquals(1, sCreated.get());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ViewModelLeakTrackerTest {
+
+    static final List<Object> sLeaked = new ArrayList<>();
+
+    public static class LeakyViewModel extends ViewModel {
+    }
+
+    private final List<String> mReports = new ArrayList<>();
+    private ViewModelLeakTracker mTracker;
+
+    @Before
+    public void setUp() {
+        mTracker = new ViewModelLeakTracker(1000, new ViewModelLeakTracker.Reporter() {
+            @Override
+            public void onViewModelRetained(@NonNull String key, @NonNull String className,
+                                            long retainedMillis) {
+                mReports.add(key + " " + className);
+            }
+        }, null);
+        ViewModelLeakTracker.setInstance(mTracker);
+    }
+
+    @After
+    public void tearDown() {
+        ViewModelLeakTracker.setInstance(null);
+        sLeaked.clear();
+    }
+
+    private static ViewModelProvider provider(ViewModelStore store) {
+        return new ViewModelProvider(store, new ViewModelProvider.NewInstanceFactory());
+    }
+
+    @Test
+    public void retainedViewModelIsReportedOnce() {
+        ViewModelStore store = new ViewModelStore();
+        sLeaked.add(provider(store).get("leaky", LeakyViewModel.class));
+        store.clear();
+        assertEquals(1, mTracker.getWatchedCount());
+
+        // 宽限期内不检查
+        assertEquals(0, mTracker.check(System.nanoTime(), false));
+        long later = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        assertEquals(1, mTracker.check(later, true));
+        assertEquals(1, mReports.size());
+        assertEquals("leaky " + LeakyViewModel.class.getName(), mReports.get(0));
+        assertEquals(0, mTracker.check(later, true));
+        assertEquals(0, mTracker.getWatchedCount());
+        assertEquals(1, mTracker.getReportedCount());
+    }
+
+    @Test
+    public void collectedViewModelIsNotReported() {
+        ViewModelStore store = new ViewModelStore();
+        for (int i = 0; i < ViewModelStore.ARRAY_THRESHOLD * 2; i++) {
+            provider(store).get("key" + i, LeakyViewModel.class);
+        }
+        store.clear();
+        store = null;
+        assertEquals(0, mTracker.check(System.nanoTime() + TimeUnit.SECONDS.toNanos(2), true));
+        assertEquals(0, mTracker.getWatchedCount());
+        assertEquals(0, mReports.size());
+    }
+
+    @Test
+    public void evictedAndReplacedViewModelsAreWatched() {
+        BoundedViewModelStore bounded = new BoundedViewModelStore(1);
+        sLeaked.add(provider(bounded).get("a", LeakyViewModel.class));
+        sLeaked.add(provider(bounded).get("b", LeakyViewModel.class));
+        ConcurrentViewModelStore concurrent = new ConcurrentViewModelStore();
+        sLeaked.add(concurrent.getOrCreate("c", LeakyViewModel.class,
+                new ViewModelProvider.NewInstanceFactory()));
+        concurrent.put("c", new LeakyViewModel());
+        assertEquals(2, mTracker.check(System.nanoTime() + TimeUnit.SECONDS.toNanos(2), false));
+        Collections.sort(mReports);
+        assertEquals("a " + LeakyViewModel.class.getName(), mReports.get(0));
+        assertEquals("c " + LeakyViewModel.class.getName(), mReports.get(1));
+    }
+
+    @Test
+    public void notInstalledDoesNothing() {
+        ViewModelLeakTracker.setInstance(null);
+        assertFalse(ViewModelLeakTracker.isInstalled());
+        ViewModelStore store = new ViewModelStore();
+        sLeaked.add(provider(store).get(LeakyViewModel.class));
+        store.clear();
+        assertEquals(0, mTracker.getWatchedCount());
+    }
+
+    @Test
+    public void installedTrackerChecksInBackground() throws InterruptedException {
+        final List<String> reports = new ArrayList<>();
+        ViewModelLeakTracker.install(10, new ViewModelLeakTracker.Reporter() {
+            @Override
+            public void onViewModelRetained(@NonNull String key, @NonNull String className,
+                                            long retainedMillis) {
+                synchronized (reports) {
+                    reports.add(key);
+                    reports.notifyAll();
+                }
+            }
+        });
+        ViewModelStore store = new ViewModelStore();
+        sLeaked.add(provider(store).get("background", LeakyViewModel.class));
+        store.clear();
+        synchronized (reports) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (reports.isEmpty() && System.currentTimeMillis() < deadline) {
+                reports.wait(100);
+            }
+        }
+        assertNotNull(ViewModelLeakTracker.getInstance());
+        assertEquals("background", reports.get(0));
+    }
+}
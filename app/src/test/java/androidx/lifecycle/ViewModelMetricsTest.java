@@ -0,0 +1,86 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+
+public class ViewModelMetricsTest {
+
+    private static final int ITERATIONS = 1_000_000;
+
+    public static class MeasuredViewModel extends ViewModel {
+    }
+
+    @Before
+    public void setUp() {
+        ViewModelMetrics.reset();
+        ViewModelMetrics.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        ViewModelMetrics.setEnabled(false);
+        ViewModelMetrics.reset();
+    }
+
+    @Test
+    public void recordsHitsMissesAndClear() {
+        ViewModelStore store = new ViewModelStore();
+        ViewModelProvider provider = new ViewModelProvider(store,
+                new ViewModelProvider.NewInstanceFactory());
+        provider.get(MeasuredViewModel.class);
+        provider.get(MeasuredViewModel.class);
+        provider.get(MeasuredViewModel.class);
+        provider.get("other", MeasuredViewModel.class);
+        store.clear();
+
+        String json = ViewModelMetrics.toJson();
+        assertTrue(json, json.contains("\"class\":\"" + MeasuredViewModel.class.getName()
+                + "\",\"hits\":2,\"misses\":2,\"createNanos\":{\"count\":2"));
+        assertTrue(json, json.contains("\"storeSizeAtClear\":{\"count\":1,\"mean\":2"));
+
+        StringWriter out = new StringWriter();
+        ViewModelMetrics.dump("", new PrintWriter(out), store);
+        assertTrue(out.toString(), out.toString().startsWith("ViewModelStore ViewModelStore size=0"));
+        assertTrue(out.toString(), out.toString().contains("hits=2 misses=2"));
+    }
+
+    @Test
+    public void histogramPercentiles() {
+        ViewModelMetrics.Histogram histogram = new ViewModelMetrics.Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50500, histogram.getMean());
+        assertEquals(100000, histogram.getMax());
+        // 桶上界
+        assertEquals(65535, histogram.getPercentile(50));
+        assertEquals(100000, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void hitPathDoesNotAllocate() {
+        ViewModelProvider provider = new ViewModelProvider(new ViewModelStore(),
+                new ViewModelProvider.NewInstanceFactory());
+        for (int i = 0; i < ITERATIONS; i++) {
+            provider.get(MeasuredViewModel.class);
+        }
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long startBytes = bean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            provider.get(MeasuredViewModel.class);
+        }
+        long bytes = bean.getThreadAllocatedBytes(threadId) - startBytes;
+        assertTrue(bytes < ITERATIONS / 100);
+    }
+}
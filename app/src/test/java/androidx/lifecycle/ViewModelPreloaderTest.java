@@ -0,0 +1,154 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ViewModelPreloaderTest {
+
+    public static class HeavyViewModel extends ViewModel {
+        static HeavyViewModel sLastCreated;
+        boolean mCleared;
+
+        public HeavyViewModel() {
+            sLastCreated = this;
+        }
+
+        @Override
+        protected void onCleared() {
+            mCleared = true;
+        }
+    }
+
+    public static class OtherViewModel extends ViewModel {
+    }
+
+    static class RecordingScheduler implements ViewModelPreloader.MainThreadScheduler {
+        final List<Runnable> mPosted = new ArrayList<>();
+
+        @Override
+        public void postDelayed(@NonNull Runnable runnable, long delayMillis) {
+            mPosted.add(runnable);
+        }
+    }
+
+    private final Application mApplication = new Application();
+    private ViewModelPreloader mPreloader;
+    private final RecordingScheduler mScheduler = new RecordingScheduler();
+
+    private ViewModelProvider provider() {
+        return new ViewModelProvider(new ViewModelStore(),
+                new ViewModelProvider.AndroidViewModelFactory(mApplication));
+    }
+
+    @Before
+    public void setUp() {
+        mPreloader = ViewModelPreloader.install(mApplication);
+        mPreloader.setScheduler(mScheduler);
+    }
+
+    @After
+    public void tearDown() {
+        ViewModelPreloader.reset();
+    }
+
+    @Test
+    public void firstOwnerGetsPreloadedInstance() {
+        mPreloader.preload(HeavyViewModel.class);
+        assertTrue(mPreloader.createNext());
+        assertFalse(mPreloader.createNext());
+        assertEquals(1, mScheduler.mPosted.size());
+        HeavyViewModel preloaded = HeavyViewModel.sLastCreated;
+
+        HeavyViewModel first = provider().get(HeavyViewModel.class);
+        HeavyViewModel second = provider().get(HeavyViewModel.class);
+        assertSame(preloaded, first);
+        assertNotSame(first, second);
+        assertEquals(0, mPreloader.getUnclaimedCount());
+
+        // 已经领取的不会超时 clear
+        mPreloader.expireUnclaimed(System.nanoTime() + TimeUnit.HOURS.toNanos(1));
+        assertFalse(first.mCleared);
+    }
+
+    @Test
+    public void preloadedInstanceIsTheOneCreated() {
+        mPreloader.preload("custom", HeavyViewModel.class);
+        mPreloader.createNext();
+        HeavyViewModel preloaded = mPreloader.claimEntry("custom", HeavyViewModel.class);
+        assertSame(HeavyViewModel.sLastCreated, preloaded);
+        assertSame(null, mPreloader.claimEntry("custom", HeavyViewModel.class));
+    }
+
+    @Test
+    public void wrongClassOrCustomFactoryDoesNotClaim() {
+        mPreloader.preload("key", HeavyViewModel.class);
+        mPreloader.createNext();
+        provider().get("key", OtherViewModel.class);
+        new ViewModelProvider(new ViewModelStore(), new ViewModelProvider.Factory() {
+            @NonNull
+            @Override
+            public <T extends ViewModel> T create(@NonNull Class<T> modelClass) {
+                //noinspection unchecked
+                return (T) new HeavyViewModel();
+            }
+        }).get("key", HeavyViewModel.class);
+        assertEquals(1, mPreloader.getUnclaimedCount());
+    }
+
+    @Test
+    public void otherFactoryOrApplicationDoesNotClaim() {
+        mPreloader.preload(HeavyViewModel.class);
+        mPreloader.createNext();
+        HeavyViewModel preloaded = HeavyViewModel.sLastCreated;
+        assertNotSame(preloaded, new ViewModelProvider(new ViewModelStore(),
+                new ViewModelProvider.NewInstanceFactory()).get(HeavyViewModel.class));
+        assertNotSame(preloaded, new ViewModelProvider(new ViewModelStore(),
+                new ViewModelProvider.AndroidViewModelFactory(new Application()))
+                .get(HeavyViewModel.class));
+        assertNotSame(preloaded, new ViewModelProvider(new ViewModelStore(),
+                new ViewModelProvider.AndroidViewModelFactory(mApplication) {
+                }).get(HeavyViewModel.class));
+        assertEquals(1, mPreloader.getUnclaimedCount());
+        assertSame(preloaded, provider().get(HeavyViewModel.class));
+    }
+
+    @Test
+    public void unclaimedInstanceIsClearedAfterTimeout() {
+        mPreloader.setTimeout(10, TimeUnit.SECONDS).preload(HeavyViewModel.class);
+        mPreloader.createNext();
+        HeavyViewModel preloaded = HeavyViewModel.sLastCreated;
+
+        mPreloader.expireUnclaimed(System.nanoTime());
+        assertEquals(1, mPreloader.getUnclaimedCount());
+        assertFalse(preloaded.mCleared);
+
+        mPreloader.expireUnclaimed(System.nanoTime() + TimeUnit.SECONDS.toNanos(11));
+        assertEquals(0, mPreloader.getUnclaimedCount());
+        assertTrue(preloaded.mCleared);
+    }
+
+    @Test
+    public void claimedBeforeCreationIsSkipped() {
+        mPreloader.preload(HeavyViewModel.class);
+        // 还没开始创建就被领取，之后不会再创建
+        HeavyViewModel own = provider().get(HeavyViewModel.class);
+        assertFalse(mPreloader.createNext());
+        assertFalse(own.mCleared);
+        assertEquals(0, mScheduler.mPosted.size());
+    }
+}
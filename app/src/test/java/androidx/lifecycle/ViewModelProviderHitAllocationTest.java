@@ -0,0 +1,62 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * ViewModelProvider.get(Class) 命中缓存时不应该分配任何对象。
+ * <p>
+ * 用 HotSpot 的 com.sun.management.ThreadMXBean 统计当前线程分配的字节数。
+ */
+public class ViewModelProviderHitAllocationTest {
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    public static class HitViewModel extends ViewModel {
+        public HitViewModel() {
+        }
+    }
+
+    @Test
+    public void defaultKeyIsCached() {
+        assertSame(ViewModelProvider.getDefaultKey(HitViewModel.class),
+                ViewModelProvider.getDefaultKey(HitViewModel.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void anonymousClassRejected() {
+        ViewModel anonymous = new ViewModel() {
+        };
+        ViewModelProvider.getDefaultKey(anonymous.getClass());
+    }
+
+    @Test
+    public void hitAllocatesNothing() {
+        ViewModelProvider provider = new ViewModelProvider(new ViewModelStore(),
+                new ViewModelProvider.NewInstanceFactory());
+        HitViewModel expected = provider.get(HitViewModel.class);
+        for (int i = 0; i < WARMUP; i++) {
+            provider.get(HitViewModel.class);
+        }
+
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        HitViewModel last = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            last = provider.get(HitViewModel.class);
+        }
+        long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+
+        assertSame(expected, last);
+        // 留一点余量给 getThreadAllocatedBytes 本身
+        assertTrue("allocated " + allocated + " bytes in " + ITERATIONS + " hits",
+                allocated < 1024);
+    }
+}
@@ -0,0 +1,158 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class ViewModelSnapshotTest {
+
+    static int sReads;
+
+    public static class CounterViewModel extends ViewModel implements ViewModelSnapshot.Savable {
+        int mCount;
+        byte[] mBlob = new byte[0];
+
+        @Override
+        public void writeSnapshot(@NonNull DataOutput out) throws IOException {
+            out.writeInt(mCount);
+            out.writeInt(mBlob.length);
+            out.write(mBlob);
+        }
+
+        @Override
+        public void readSnapshot(@NonNull DataInput in) throws IOException {
+            sReads++;
+            mCount = in.readInt();
+            mBlob = new byte[in.readInt()];
+            in.readFully(mBlob);
+        }
+    }
+
+    public static class PlainViewModel extends ViewModel {
+    }
+
+    private static ViewModelProvider provider(ViewModelStore store) {
+        return new ViewModelProvider(store, new ViewModelProvider.NewInstanceFactory());
+    }
+
+    @Test
+    public void nothingToSave() throws IOException {
+        ViewModelStore store = new ViewModelStore();
+        provider(store).get(PlainViewModel.class);
+        assertNull(ViewModelSnapshot.encode(store));
+    }
+
+    @Test
+    public void restoresLazilyOnGet() throws IOException {
+        ViewModelStore store = new ViewModelStore();
+        provider(store).get(PlainViewModel.class);
+        provider(store).get("a", CounterViewModel.class).mCount = 3;
+        provider(store).get("b", CounterViewModel.class).mCount = 7;
+        byte[] bytes = ViewModelSnapshot.encode(store);
+
+        // 进程重建
+        sReads = 0;
+        ViewModelStore restored = new ViewModelStore();
+        restored.setSnapshot(ViewModelSnapshot.decode(ByteBuffer.wrap(bytes)));
+        assertEquals(2, restored.getSnapshot().size());
+        assertEquals(0, sReads);
+
+        assertEquals(7, provider(restored).get("b", CounterViewModel.class).mCount);
+        assertEquals(1, sReads);
+        // 已经在 store 中的不会再恢复
+        assertEquals(7, provider(restored).get("b", CounterViewModel.class).mCount);
+        assertEquals(1, sReads);
+        assertEquals(1, restored.getSnapshot().size());
+
+        // 还没有获取的 a 在下一次保存时原样带上
+        ViewModelStore again = new ViewModelStore();
+        again.setSnapshot(ViewModelSnapshot.decode(
+                ByteBuffer.wrap(ViewModelSnapshot.encode(restored))));
+        assertEquals(3, provider(again).get("a", CounterViewModel.class).mCount);
+        assertEquals(7, provider(again).get("b", CounterViewModel.class).mCount);
+    }
+
+    @Test
+    public void boundedStoreKeepsAccessOrder() throws IOException {
+        BoundedViewModelStore store = new BoundedViewModelStore(3);
+        provider(store).get("a", CounterViewModel.class).mCount = 1;
+        provider(store).get("b", CounterViewModel.class).mCount = 2;
+        provider(store).get("c", CounterViewModel.class).mCount = 3;
+        byte[] bytes = ViewModelSnapshot.encode(store);
+
+        ViewModelStore restored = new ViewModelStore();
+        restored.setSnapshot(ViewModelSnapshot.decode(ByteBuffer.wrap(bytes)));
+        assertEquals(3, restored.getSnapshot().size());
+        assertEquals(2, provider(restored).get("b", CounterViewModel.class).mCount);
+
+        // 保存之后 a 仍然是最久未使用的
+        provider(store).get("d", CounterViewModel.class);
+        assertFalse(store.keys().contains("a"));
+        assertTrue(store.keys().contains("b"));
+    }
+
+    @Test
+    public void classMismatchIsNotRestored() throws IOException {
+        ViewModelStore store = new ViewModelStore();
+        provider(store).get("key", CounterViewModel.class).mCount = 5;
+        ViewModelStore restored = new ViewModelStore();
+        restored.setSnapshot(ViewModelSnapshot.decode(
+                ByteBuffer.wrap(ViewModelSnapshot.encode(store))));
+        provider(restored).get("key", PlainViewModel.class);
+        assertEquals(0, restored.getSnapshot().size());
+        restored.clear();
+        assertNull(restored.getSnapshot());
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptSnapshotIsRejected() throws IOException {
+        ViewModelSnapshot.decode(ByteBuffer.wrap(new byte[]{0x56, 0x4d, 0x53, 0x31, 0, 0, 0, 1}));
+    }
+
+    @Test
+    public void largeSnapshotThroughMappedFile() throws IOException {
+        ViewModelStore store = new ViewModelStore();
+        CounterViewModel viewModel = provider(store).get(CounterViewModel.class);
+        viewModel.mBlob = new byte[ViewModelSnapshot.BUNDLE_LIMIT_BYTES * 4];
+        for (int i = 0; i < viewModel.mBlob.length; i++) {
+            viewModel.mBlob[i] = (byte) i;
+        }
+        byte[] bytes = ViewModelSnapshot.encode(store);
+        assertTrue(bytes.length > ViewModelSnapshot.BUNDLE_LIMIT_BYTES);
+        File file = File.createTempFile("viewmodel-snapshot", ".bin");
+        ViewModelSnapshot.writeMapped(file, bytes);
+
+        ViewModelSnapshot snapshot = ViewModelSnapshot.decode(ViewModelSnapshot.map(file));
+        assertTrue(file.delete());
+        ViewModelStore restored = new ViewModelStore();
+        restored.setSnapshot(snapshot);
+        CounterViewModel copy = provider(restored).get(CounterViewModel.class);
+        assertArrayEquals(viewModel.mBlob, copy.mBlob);
+    }
+
+    @Test
+    public void rewriteOverwritesSameFile() throws IOException {
+        File file = File.createTempFile("viewmodel-snapshot", ".bin");
+        ViewModelSnapshot.writeMapped(file, new byte[1024]);
+        byte[] bytes = {1, 2, 3};
+        ViewModelSnapshot.writeMapped(file, bytes);
+        assertEquals(bytes.length, file.length());
+        ByteBuffer mapped = ViewModelSnapshot.map(file);
+        assertTrue(file.delete());
+        byte[] read = new byte[mapped.remaining()];
+        mapped.get(read);
+        assertArrayEquals(bytes, read);
+    }
+}
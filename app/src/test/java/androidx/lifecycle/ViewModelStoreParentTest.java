@@ -0,0 +1,116 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class ViewModelStoreParentTest {
+
+    static int sCreated;
+
+    public static class ScreenViewModel extends ViewModel {
+        public ScreenViewModel() {
+            sCreated++;
+        }
+    }
+
+    public static class LocalViewModel extends ViewModel {
+    }
+
+    private static ViewModelProvider provider(ViewModelStore store) {
+        return new ViewModelProvider(store, new ViewModelProvider.NewInstanceFactory());
+    }
+
+    @Test
+    public void sharedKeyResolvesToParent() {
+        ViewModelStore activity = new ViewModelStore();
+        activity.share(ScreenViewModel.class);
+        ViewModelStore fragment = new ViewModelStore();
+        fragment.setParent(activity);
+        ViewModelStore child = new ViewModelStore();
+        child.setParent(fragment);
+
+        sCreated = 0;
+        // 下级先获取时在上级中创建
+        ScreenViewModel fromChild = provider(child).get(ScreenViewModel.class);
+        assertSame(fromChild, provider(activity).get(ScreenViewModel.class));
+        assertSame(fromChild, provider(fragment).get(ScreenViewModel.class));
+        assertEquals(1, sCreated);
+        assertEquals(0, fragment.size());
+        assertEquals(0, child.size());
+
+        // 下级 clear 不影响上级中的实例
+        child.clear();
+        fragment.clear();
+        assertSame(fromChild, activity.get(ViewModelProvider.getDefaultKey(ScreenViewModel.class)));
+    }
+
+    @Test
+    public void grandchildReachesActivityThroughUnlinkedParent() {
+        ViewModelStore activity = new ViewModelStore();
+        activity.share(ScreenViewModel.class);
+        // 父 Fragment 从来没有调用过 ViewModelProviders.of()
+        ViewModelStore parent = new ViewModelStore();
+        ViewModelStore grandchild = new ViewModelStore();
+        ViewModelStore.linkChain(Arrays.asList(grandchild, parent, activity));
+
+        assertSame(parent, grandchild.getParent());
+        assertSame(activity, parent.getParent());
+        assertSame(provider(activity).get(ScreenViewModel.class),
+                provider(grandchild).get(ScreenViewModel.class));
+        assertEquals(0, parent.size());
+        assertEquals(0, grandchild.size());
+    }
+
+    @Test
+    public void unsharedKeysStayLocal() {
+        ViewModelStore activity = new ViewModelStore();
+        activity.share("custom");
+        ViewModelStore fragment = new ViewModelStore();
+        fragment.setParent(activity);
+
+        LocalViewModel local = provider(fragment).get(LocalViewModel.class);
+        assertNotSame(local, provider(activity).get(LocalViewModel.class));
+        assertSame(provider(fragment).get("custom", LocalViewModel.class),
+                provider(activity).get("custom", LocalViewModel.class));
+        assertNull(fragment.get("custom"));
+    }
+
+    @Test
+    public void nearestSharingAncestorWins() {
+        ViewModelStore activity = new ViewModelStore();
+        activity.share("key");
+        ViewModelStore parentFragment = new ViewModelStore();
+        parentFragment.setParent(activity);
+        parentFragment.share("key");
+        ViewModelStore fragment = new ViewModelStore();
+        fragment.setParent(parentFragment);
+
+        LocalViewModel viewModel = provider(fragment).get("key", LocalViewModel.class);
+        assertSame(viewModel, parentFragment.get("key"));
+        assertNull(activity.get("key"));
+    }
+
+    @Test
+    public void concurrentParent() {
+        ConcurrentViewModelStore activity = new ConcurrentViewModelStore();
+        activity.share(ScreenViewModel.class);
+        ViewModelStore fragment = new ViewModelStore();
+        fragment.setParent(activity);
+        assertSame(provider(fragment).get(ScreenViewModel.class),
+                provider(activity).get(ScreenViewModel.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cycleIsRejected() {
+        ViewModelStore a = new ViewModelStore();
+        ViewModelStore b = new ViewModelStore();
+        b.setParent(a);
+        a.setParent(b);
+    }
+}
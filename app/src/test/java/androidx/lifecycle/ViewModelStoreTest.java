@@ -0,0 +1,136 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ViewModelStoreTest {
+
+    private static final int FRAGMENTS = 1_000;
+    // 放 1 到 4 个 ViewModel 的 store 平均占用的上限，HashMap 的写法在 200 字节以上
+    private static final long MAX_BYTES_PER_STORE = 160;
+
+    static class CountingViewModel extends ViewModel {
+        int mOnClearedCount;
+
+        @Override
+        protected void onCleared() {
+            mOnClearedCount++;
+        }
+    }
+
+    @Test
+    public void putGetAcrossThreshold() {
+        ViewModelStore store = new ViewModelStore();
+        CountingViewModel[] viewModels = new CountingViewModel[ViewModelStore.ARRAY_THRESHOLD * 2];
+        for (int i = 0; i < viewModels.length; i++) {
+            viewModels[i] = new CountingViewModel();
+            store.put("key" + i, viewModels[i]);
+            for (int j = 0; j <= i; j++) {
+                assertSame(viewModels[j], store.get("key" + j));
+            }
+            assertEquals(i + 1, store.size());
+        }
+        assertNull(store.get("missing"));
+
+        Set<String> keys = new HashSet<>(store.keys());
+        assertEquals(viewModels.length, keys.size());
+        assertTrue(store.keys().contains("key0"));
+        assertFalse(store.keys().contains("missing"));
+
+        store.clear();
+        for (CountingViewModel viewModel : viewModels) {
+            assertEquals(1, viewModel.mOnClearedCount);
+        }
+        assertEquals(0, store.size());
+        assertTrue(store.keys().isEmpty());
+    }
+
+    @Test
+    public void replaceClearsOldViewModel() {
+        ViewModelStore store = new ViewModelStore();
+        CountingViewModel first = new CountingViewModel();
+        CountingViewModel second = new CountingViewModel();
+        store.put("key", first);
+        store.put("key", second);
+        assertEquals(1, first.mOnClearedCount);
+        assertSame(second, store.get("key"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void keysViewIsNotCopied() {
+        ViewModelStore store = new ViewModelStore();
+        Set<String> keys = store.keys();
+        store.put("a", new CountingViewModel());
+        assertEquals(1, keys.size());
+        assertSame(keys, store.keys());
+    }
+
+    /**
+     * 模拟 1000 个 Fragment，每个 store 放 1 到 4 个 ViewModel，对比原来 HashMap 的写法占用的字节数。
+     */
+    @Test
+    public void bytesPerStore() {
+        String[] keys = new String[4];
+        ViewModel[] viewModels = new ViewModel[4];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "androidx.lifecycle.ViewModelProvider.DefaultKey:Model" + i;
+            viewModels[i] = new CountingViewModel();
+        }
+        // 预热，避免类加载计入分配
+        buildHashMaps(keys, viewModels);
+        buildStores(keys, viewModels);
+
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long start = bean.getThreadAllocatedBytes(threadId);
+        Object hashMaps = buildHashMaps(keys, viewModels);
+        long hashMapBytes = bean.getThreadAllocatedBytes(threadId) - start;
+
+        start = bean.getThreadAllocatedBytes(threadId);
+        Object stores = buildStores(keys, viewModels);
+        long storeBytes = bean.getThreadAllocatedBytes(threadId) - start;
+
+        assertTrue(storeBytes < hashMapBytes);
+        assertTrue("compact store: " + storeBytes / FRAGMENTS + " bytes/store",
+                storeBytes / FRAGMENTS <= MAX_BYTES_PER_STORE);
+        assertEquals(FRAGMENTS, ((Object[]) hashMaps).length);
+        assertEquals(FRAGMENTS, ((Object[]) stores).length);
+    }
+
+    private static Object buildHashMaps(String[] keys, ViewModel[] viewModels) {
+        Object[] result = new Object[FRAGMENTS];
+        for (int i = 0; i < FRAGMENTS; i++) {
+            HashMap<String, ViewModel> map = new HashMap<>();
+            for (int j = 0; j <= i % keys.length; j++) {
+                map.put(keys[j], viewModels[j]);
+            }
+            result[i] = map;
+        }
+        return result;
+    }
+
+    private static Object buildStores(String[] keys, ViewModel[] viewModels) {
+        Object[] result = new Object[FRAGMENTS];
+        for (int i = 0; i < FRAGMENTS; i++) {
+            ViewModelStore store = new ViewModelStore();
+            for (int j = 0; j <= i % keys.length; j++) {
+                store.put(keys[j], viewModels[j]);
+            }
+            result[i] = store;
+        }
+        return result;
+    }
+}
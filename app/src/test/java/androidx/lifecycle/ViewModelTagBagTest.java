@@ -0,0 +1,141 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ViewModelTagBagTest {
+
+    private static final int ITEM_VIEW_MODELS = 10_000;
+
+    static class ItemViewModel extends ViewModel {
+    }
+
+    /**
+     * 原来的写法：每个 ViewModel 构造时都分配一个 ConcurrentHashMap。
+     */
+    static class EagerBagViewModel extends ViewModel {
+        final ConcurrentHashMap<String, Object> mEagerBag = new ConcurrentHashMap<>();
+    }
+
+    static class CountingCloseable implements Closeable {
+        final AtomicInteger mCloseCount = new AtomicInteger();
+
+        @Override
+        public void close() {
+            mCloseCount.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void putIfAbsentSemantics() {
+        ItemViewModel viewModel = new ItemViewModel();
+        assertNull(viewModel.getTag("missing"));
+        String[] values = new String[ViewModel.MAX_TAG_NODES * 2];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = "value" + i;
+            assertSame(values[i], viewModel.setTagIfAbsent("key" + i, values[i]));
+            assertSame(values[i], viewModel.setTagIfAbsent("key" + i, "ignored"));
+        }
+        for (int i = 0; i < values.length; i++) {
+            assertSame(values[i], viewModel.getTag("key" + i));
+        }
+    }
+
+    @Test
+    public void closedOnClearAndAfterClear() {
+        ItemViewModel viewModel = new ItemViewModel();
+        CountingCloseable before = new CountingCloseable();
+        viewModel.setTagIfAbsent("before", before);
+        viewModel.clear();
+        assertEquals(1, before.mCloseCount.get());
+
+        CountingCloseable after = new CountingCloseable();
+        viewModel.setTagIfAbsent("after", after);
+        assertEquals(1, after.mCloseCount.get());
+    }
+
+    @Test
+    public void concurrentPutIfAbsent() throws Exception {
+        for (int round = 0; round < 100; round++) {
+            final ItemViewModel viewModel = new ItemViewModel();
+            final Object[] results = new Object[8];
+            final CountDownLatch go = new CountDownLatch(1);
+            Thread[] threads = new Thread[results.length];
+            for (int i = 0; i < threads.length; i++) {
+                final int index = i;
+                threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            go.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        viewModel.setTagIfAbsent("other" + index, index);
+                        results[index] = viewModel.setTagIfAbsent("shared", new Object());
+                    }
+                };
+                threads[i].start();
+            }
+            go.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            for (int i = 0; i < results.length; i++) {
+                assertSame(results[0], results[i]);
+                assertEquals(i, (int) (Integer) viewModel.getTag("other" + i));
+            }
+        }
+    }
+
+    /**
+     * 对比几千个列表项 ViewModel 同时存活时，每个 ViewModel 占用的字节数。
+     */
+    @Test
+    public void heapPerViewModel() {
+        // 预热，避免类加载计入分配
+        allocate(false);
+        allocate(true);
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long start = bean.getThreadAllocatedBytes(threadId);
+        Object eager = allocate(true);
+        long eagerBytes = bean.getThreadAllocatedBytes(threadId) - start;
+
+        start = bean.getThreadAllocatedBytes(threadId);
+        Object lazy = allocate(false);
+        long lazyBytes = bean.getThreadAllocatedBytes(threadId) - start;
+
+        start = bean.getThreadAllocatedBytes(threadId);
+        Object[] tagged = (Object[]) allocate(false);
+        for (Object viewModel : tagged) {
+            ((ViewModel) viewModel).setTagIfAbsent("scope", Boolean.TRUE);
+        }
+        long taggedBytes = bean.getThreadAllocatedBytes(threadId) - start;
+
+        assertTrue(lazyBytes < eagerBytes);
+        assertTrue(taggedBytes < eagerBytes);
+        assertEquals(ITEM_VIEW_MODELS, ((Object[]) eager).length);
+        assertEquals(ITEM_VIEW_MODELS, ((Object[]) lazy).length);
+    }
+
+    private static Object allocate(boolean eager) {
+        Object[] viewModels = new Object[ITEM_VIEW_MODELS];
+        for (int i = 0; i < viewModels.length; i++) {
+            viewModels[i] = eager ? new EagerBagViewModel() : new ItemViewModel();
+        }
+        return viewModels;
+    }
+}
@@ -0,0 +1,116 @@
+package androidx.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ViewModelTaskScopeTest {
+
+    // 不超过共享线程池的线程数，保证所有任务能同时运行
+    private static final int RUNNING_TASKS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int SMALL_TASKS = 10_000;
+
+    static class ScopedViewModel extends ViewModel {
+    }
+
+    @Test
+    public void sameScopeAndSubmitResult() throws Exception {
+        ScopedViewModel viewModel = new ScopedViewModel();
+        ViewModelTaskScope scope = ViewModelTaskScope.of(viewModel);
+        assertSame(scope, ViewModelTaskScope.of(viewModel));
+        Future<String> future = scope.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return "done";
+            }
+        });
+        assertEquals("done", future.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void launchAfterClearIsCancelled() {
+        ScopedViewModel viewModel = new ScopedViewModel();
+        viewModel.clear();
+        ViewModelTaskScope scope = ViewModelTaskScope.of(viewModel);
+        assertTrue(scope.isClosed());
+        final AtomicInteger runs = new AtomicInteger();
+        Future<?> future = scope.launch(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        });
+        assertTrue(future.isCancelled());
+        assertEquals(0, runs.get());
+    }
+
+    /**
+     * clear() 中断所有正在运行的任务。
+     */
+    @Test
+    public void clearInterruptsRunningTasks() throws Exception {
+        ScopedViewModel viewModel = new ScopedViewModel();
+        ViewModelTaskScope scope = ViewModelTaskScope.of(viewModel);
+        final CountDownLatch started = new CountDownLatch(RUNNING_TASKS);
+        final CountDownLatch stopped = new CountDownLatch(RUNNING_TASKS);
+        for (int i = 0; i < RUNNING_TASKS; i++) {
+            scope.launch(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    while (!Thread.currentThread().isInterrupted()) {
+                        // 模拟计算，定期检查中断
+                        Thread.yield();
+                    }
+                    stopped.countDown();
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        viewModel.clear();
+        assertTrue(stopped.await(1, TimeUnit.SECONDS));
+        waitForEmpty(scope);
+    }
+
+    /**
+     * 大量小任务全部执行完，结束后 scope 不再持有任何任务。
+     */
+    @Test
+    public void manySmallTasksAllRun() throws Exception {
+        ScopedViewModel viewModel = new ScopedViewModel();
+        ViewModelTaskScope scope = ViewModelTaskScope.of(viewModel);
+        runSmallTasks(scope, SMALL_TASKS);
+        waitForEmpty(scope);
+        viewModel.clear();
+        assertTrue(scope.isClosed());
+    }
+
+    private static void runSmallTasks(ViewModelTaskScope scope, int count) throws Exception {
+        final CountDownLatch done = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            scope.launch(new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+    }
+
+    private static void waitForEmpty(ViewModelTaskScope scope) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (scope.getActiveTaskCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, scope.getActiveTaskCount());
+    }
+}
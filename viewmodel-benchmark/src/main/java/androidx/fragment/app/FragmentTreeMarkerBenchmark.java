@@ -0,0 +1,128 @@
+package androidx.fragment.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FragmentActivity.markFragmentsCreated 在合成的 Fragment 树上的开销：
+ * 原来递归、重复遍历直到没有可标记的写法，对比 {@link FragmentTreeMarker} 的单次遍历。
+ * 树的每一层有 breadth 个 Fragment，共 depth 层，每次调用前所有 Fragment 恢复为 STARTED。
+ * getFragments 和 FragmentManager 一样返回副本。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FragmentTreeMarkerBenchmark {
+
+    static final class Node {
+        boolean mStarted;
+        ArrayList<Node> mChildren;
+    }
+
+    private static final FragmentTreeMarker.Tree<Node, Node> TREE =
+            new FragmentTreeMarker.Tree<Node, Node>() {
+                @Override
+                public Collection<Node> getFragments(Node manager) {
+                    return new ArrayList<>(manager.mChildren);
+                }
+
+                @Override
+                public Node getChildManager(Node fragment) {
+                    return fragment.mChildren != null ? fragment : null;
+                }
+
+                @Override
+                public boolean markIfStarted(Node fragment) {
+                    if (fragment.mStarted) {
+                        fragment.mStarted = false;
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    @Param({"2", "4", "8"})
+    public int depth;
+
+    @Param({"2", "4", "8"})
+    public int breadth;
+
+    private Node mRoot;
+    private final List<Node> mAll = new ArrayList<>();
+    private FragmentTreeMarker<Node, Node> mMarker;
+
+    @Setup(Level.Trial)
+    public void buildTree() {
+        mAll.clear();
+        mRoot = build(0);
+        mMarker = new FragmentTreeMarker<>(TREE);
+    }
+
+    private Node build(int level) {
+        Node node = new Node();
+        mAll.add(node);
+        if (level < depth) {
+            node.mChildren = new ArrayList<>(breadth);
+            for (int i = 0; i < breadth; i++) {
+                node.mChildren.add(build(level + 1));
+            }
+        }
+        return node;
+    }
+
+    @Setup(Level.Invocation)
+    public void start() {
+        for (int i = 0; i < mAll.size(); i++) {
+            mAll.get(i).mStarted = true;
+        }
+    }
+
+    @Benchmark
+    public int singlePass() {
+        return mMarker.mark(mRoot);
+    }
+
+    @Benchmark
+    public int recursiveUntilUnchanged() {
+        int passes = 0;
+        boolean reiterate;
+        do {
+            reiterate = markState(mRoot);
+            passes++;
+        } while (reiterate);
+        return passes;
+    }
+
+    // FragmentActivity.markState 原来的实现
+    private static boolean markState(Node manager) {
+        boolean hadNotMarked = false;
+        for (Node fragment : TREE.getFragments(manager)) {
+            if (TREE.markIfStarted(fragment)) {
+                hadNotMarked = true;
+            }
+            Node child = TREE.getChildManager(fragment);
+            if (child != null) {
+                hadNotMarked |= markState(child);
+            }
+        }
+        return hadNotMarked;
+    }
+}
@@ -0,0 +1,104 @@
+package androidx.fragment.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 有大量活动 Fragment 时按 who 找到结果的接收者：{@link FragmentWhoIndex} 对比
+ * FragmentManager.findFragmentByWho 那样遍历所有活动 Fragment 及其子 FragmentManager。
+ * 每个顶层 Fragment 带 2 个子 Fragment，要找的 Fragment 轮流取，包括最后一个。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FragmentWhoIndexBenchmark {
+
+    private static final int CHILDREN = 2;
+
+    static final class Node {
+        // 和 Fragment.mWho 一样是 UUID 字符串
+        final String mWho = UUID.randomUUID().toString();
+        List<Node> mChildren;
+
+        Node findFragmentByWho(String who) {
+            if (who.equals(mWho)) {
+                return this;
+            }
+            return mChildren != null ? find(mChildren, who) : null;
+        }
+    }
+
+    @Param({"100", "300", "1000"})
+    public int fragments;
+
+    private final List<Node> mActive = new ArrayList<>();
+    private final FragmentWhoIndex<Node> mIndex = new FragmentWhoIndex<>();
+    private String[] mTargets;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        List<String> targets = new ArrayList<>();
+        for (int i = 0; i < fragments / (CHILDREN + 1); i++) {
+            Node node = new Node();
+            node.mChildren = new ArrayList<>(CHILDREN);
+            for (int j = 0; j < CHILDREN; j++) {
+                Node child = new Node();
+                node.mChildren.add(child);
+                mIndex.add(child.mWho, child);
+                targets.add(child.mWho);
+            }
+            mActive.add(node);
+            mIndex.add(node.mWho, node);
+            targets.add(node.mWho);
+        }
+        // 新字符串，和从 savedInstanceState 恢复的 who 一样不能靠引用相等命中
+        mTargets = new String[targets.size()];
+        for (int i = 0; i < mTargets.length; i++) {
+            mTargets[i] = new String(targets.get(i));
+        }
+    }
+
+    private String nextTarget() {
+        String who = mTargets[mNext];
+        mNext = (mNext + 1) % mTargets.length;
+        return who;
+    }
+
+    @Benchmark
+    public Node index() {
+        return mIndex.get(nextTarget());
+    }
+
+    @Benchmark
+    public Node walkActiveFragments() {
+        return find(mActive, nextTarget());
+    }
+
+    static Node find(List<Node> fragments, String who) {
+        for (int i = 0; i < fragments.size(); i++) {
+            Node found = fragments.get(i).findFragmentByWho(who);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+}
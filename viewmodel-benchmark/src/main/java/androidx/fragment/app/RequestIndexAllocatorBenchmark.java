@@ -0,0 +1,116 @@
+package androidx.fragment.app;
+
+import androidx.collection.SparseArrayCompat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 有大量未返回的请求时分配一个 request index 的开销，对比 FragmentActivity 原来在 SparseArrayCompat 上线性探测的做法。
+ * <ul>
+ * <li>slidingWindow：分配一个新的、释放最早的一个，未返回的请求是连续的一段，候选位置总在这段之后</li>
+ * <li>clustered：候选位置正好落在一段连续已分配的 index 开头，分配后释放并把候选位置放回原处</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestIndexAllocatorBenchmark {
+
+    // 与 FragmentActivity.MAX_NUM_PENDING_FRAGMENT_ACTIVITY_RESULTS 相同
+    private static final int CAPACITY = 0xffff - 1;
+    private static final String WHO = "android:fragment:0";
+
+    @Param({"1000", "5000", "20000"})
+    public int outstanding;
+
+    private RequestIndexAllocator mAllocator;
+    private int[] mWindow;
+    private int mOldest;
+
+    private SparseArrayCompat<String> mPending;
+    private int mNextCandidate;
+    private int[] mProbingWindow;
+    private int mProbingOldest;
+
+    @Setup
+    public void setUp() {
+        mAllocator = new RequestIndexAllocator(CAPACITY);
+        mPending = new SparseArrayCompat<>();
+        mWindow = new int[outstanding];
+        mProbingWindow = new int[outstanding];
+        for (int i = 0; i < outstanding; i++) {
+            mWindow[i] = mAllocator.allocate();
+            mProbingWindow[i] = probingAllocate();
+        }
+        mOldest = 0;
+        mProbingOldest = 0;
+    }
+
+    @Benchmark
+    public int slidingWindowBitmap() {
+        int index = mAllocator.allocate();
+        mAllocator.release(mWindow[mOldest]);
+        mWindow[mOldest] = index;
+        mOldest = (mOldest + 1) % outstanding;
+        return index;
+    }
+
+    @Benchmark
+    public int slidingWindowProbing() {
+        int index = probingAllocate();
+        mPending.remove(mProbingWindow[mProbingOldest]);
+        mProbingWindow[mProbingOldest] = index;
+        mProbingOldest = (mProbingOldest + 1) % outstanding;
+        return index;
+    }
+
+    @Benchmark
+    public int clusteredBitmap() {
+        int candidate = mAllocator.getNextCandidate();
+        // 候选位置放回到最早那个未返回的请求上，后面是 outstanding 个连续已分配的 index
+        mAllocator.setNextCandidate(mWindow[mOldest]);
+        int index = mAllocator.allocate();
+        mAllocator.release(index);
+        mAllocator.setNextCandidate(candidate);
+        return index;
+    }
+
+    @Benchmark
+    public int clusteredProbing() {
+        int candidate = mNextCandidate;
+        mNextCandidate = mProbingWindow[mProbingOldest];
+        int index = probingAllocate();
+        mPending.remove(index);
+        mNextCandidate = candidate;
+        return index;
+    }
+
+    // FragmentActivity.allocateRequestIndex 原来的实现
+    private int probingAllocate() {
+        if (mPending.size() >= CAPACITY) {
+            throw new IllegalStateException("Too many pending Fragment activity results.");
+        }
+        while (mPending.indexOfKey(mNextCandidate) >= 0) {
+            mNextCandidate = (mNextCandidate + 1) % CAPACITY;
+        }
+        int requestIndex = mNextCandidate;
+        mPending.put(requestIndex, WHO);
+        mNextCandidate = (mNextCandidate + 1) % CAPACITY;
+        return requestIndex;
+    }
+}
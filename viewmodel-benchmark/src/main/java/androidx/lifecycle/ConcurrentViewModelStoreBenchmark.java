@@ -0,0 +1,47 @@
+package androidx.lifecycle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多个线程同时从同一个 ConcurrentViewModelStore 命中已有 ViewModel 的开销。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentViewModelStoreBenchmark {
+
+    public static class PlainViewModel extends ViewModel {
+    }
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        ViewModelProvider mProvider;
+
+        @Setup
+        public void setUp() {
+            mProvider = new ViewModelProvider(new ConcurrentViewModelStore(),
+                    new ViewModelProvider.NewInstanceFactory());
+            mProvider.get(PlainViewModel.class);
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ViewModel getHitContended(Shared shared) {
+        return shared.mProvider.getConcurrent(PlainViewModel.class);
+    }
+}
@@ -0,0 +1,73 @@
+package androidx.lifecycle;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 未命中时创建 ViewModel 的前后对比：uncached 是原来每次都反射查找构造函数的写法，
+ * cached 是 {@link ViewModelCreators} 按 class 缓存之后的写法。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewModelCreatorsBenchmark {
+
+    public static class PlainViewModel extends ViewModel {
+        public PlainViewModel() {
+        }
+    }
+
+    public static class AppViewModel extends AndroidViewModel {
+        public AppViewModel(@NonNull Application application) {
+            super(application);
+        }
+    }
+
+    private Application mApplication;
+
+    @Setup
+    public void setUp() {
+        mApplication = new Application();
+    }
+
+    @Benchmark
+    public ViewModel noArgUncached() throws Exception {
+        return PlainViewModel.class.getConstructor().newInstance();
+    }
+
+    @Benchmark
+    public ViewModel noArgCached() {
+        return ViewModelCreators.create(PlainViewModel.class, null);
+    }
+
+    @Benchmark
+    public ViewModel applicationUncached() throws Exception {
+        Class<AppViewModel> modelClass = AppViewModel.class;
+        if (!AndroidViewModel.class.isAssignableFrom(modelClass)) {
+            throw new AssertionError();
+        }
+        return modelClass.getConstructor(Application.class).newInstance(mApplication);
+    }
+
+    @Benchmark
+    public ViewModel applicationCached() {
+        return ViewModelCreators.create(AppViewModel.class, mApplication);
+    }
+}
@@ -0,0 +1,84 @@
+package androidx.lifecycle;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各种 Factory 创建 ViewModel 的开销，directNew 是直接 new 的基准线。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewModelFactoryBenchmark {
+
+    public static class PlainViewModel extends ViewModel {
+    }
+
+    @GenerateViewModelFactory
+    public static class GeneratedViewModel extends ViewModel {
+    }
+
+    public static class AppViewModel extends AndroidViewModel {
+        public AppViewModel(@NonNull Application application) {
+            super(application);
+        }
+    }
+
+    @GenerateViewModelFactory
+    public static class GeneratedAppViewModel extends AndroidViewModel {
+        public GeneratedAppViewModel(@NonNull Application application) {
+            super(application);
+        }
+    }
+
+    private ViewModelProvider.NewInstanceFactory mNewInstanceFactory;
+    private ViewModelProvider.AndroidViewModelFactory mAndroidFactory;
+
+    @Setup
+    public void setUp() {
+        mNewInstanceFactory = new ViewModelProvider.NewInstanceFactory();
+        mAndroidFactory = new ViewModelProvider.AndroidViewModelFactory(new Application());
+    }
+
+    @Benchmark
+    public ViewModel directNew() {
+        return new PlainViewModel();
+    }
+
+    @Benchmark
+    public ViewModel newInstanceFactoryReflective() {
+        return mNewInstanceFactory.create(PlainViewModel.class);
+    }
+
+    @Benchmark
+    public ViewModel newInstanceFactoryGenerated() {
+        return mNewInstanceFactory.create(GeneratedViewModel.class);
+    }
+
+    @Benchmark
+    public ViewModel androidFactoryReflective() {
+        return mAndroidFactory.create(AppViewModel.class);
+    }
+
+    @Benchmark
+    public ViewModel androidFactoryGenerated() {
+        return mAndroidFactory.create(GeneratedAppViewModel.class);
+    }
+}
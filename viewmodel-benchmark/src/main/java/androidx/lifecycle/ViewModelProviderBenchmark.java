@@ -0,0 +1,82 @@
+package androidx.lifecycle;
+
+import android.app.Application;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ViewModelProvider.get 的命中和未命中，按 class 和按自定义 key。
+ * 未命中每次都用新的 store，包含 store 和 provider 的分配。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewModelProviderBenchmark {
+
+    private static final String KEY = "benchmark";
+
+    public static class PlainViewModel extends ViewModel {
+    }
+
+    @GenerateViewModelFactory
+    public static class GeneratedViewModel extends ViewModel {
+    }
+
+    private ViewModelProvider.Factory mFactory;
+    private ViewModelProvider mProvider;
+    private ViewModelProvider mConcurrentProvider;
+
+    @Setup
+    public void setUp() {
+        mFactory = ViewModelProvider.AndroidViewModelFactory.getInstance(new Application());
+        mProvider = new ViewModelProvider(new ViewModelStore(), mFactory);
+        mProvider.get(PlainViewModel.class);
+        mProvider.get(KEY, PlainViewModel.class);
+        mConcurrentProvider = new ViewModelProvider(new ConcurrentViewModelStore(), mFactory);
+        mConcurrentProvider.get(PlainViewModel.class);
+    }
+
+    @Benchmark
+    public ViewModel getHitByClass() {
+        return mProvider.get(PlainViewModel.class);
+    }
+
+    @Benchmark
+    public ViewModel getHitByKey() {
+        return mProvider.get(KEY, PlainViewModel.class);
+    }
+
+    @Benchmark
+    public ViewModel getHitConcurrentStore() {
+        return mConcurrentProvider.get(PlainViewModel.class);
+    }
+
+    @Benchmark
+    public ViewModel getMissReflective() {
+        return new ViewModelProvider(new ViewModelStore(), mFactory).get(PlainViewModel.class);
+    }
+
+    @Benchmark
+    public ViewModel getMissGenerated() {
+        return new ViewModelProvider(new ViewModelStore(), mFactory).get(GeneratedViewModel.class);
+    }
+
+    @Benchmark
+    public ViewModel getMissByKey() {
+        return new ViewModelProvider(new ViewModelStore(), mFactory).get(KEY, PlainViewModel.class);
+    }
+}
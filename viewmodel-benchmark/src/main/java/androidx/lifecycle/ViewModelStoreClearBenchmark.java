@@ -0,0 +1,69 @@
+package androidx.lifecycle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不同条目数下 ViewModelStore.clear() 的耗时。每次调用前重新填充 store，
+ * 条目数很小时结果包含 JMH 每次调用 setup 的误差，看趋势即可。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewModelStoreClearBenchmark {
+
+    public static class ItemViewModel extends ViewModel {
+    }
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    public int size;
+
+    @Param({"default", "concurrent", "bounded"})
+    public String storeType;
+
+    private String[] mKeys;
+    private ViewModelStore mStore;
+
+    @Setup(Level.Trial)
+    public void createKeys() {
+        mKeys = new String[size];
+        for (int i = 0; i < size; i++) {
+            mKeys[i] = "item:" + i;
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        if ("concurrent".equals(storeType)) {
+            mStore = new ConcurrentViewModelStore();
+        } else if ("bounded".equals(storeType)) {
+            mStore = new BoundedViewModelStore(size);
+        } else {
+            mStore = new ViewModelStore();
+        }
+        for (String key : mKeys) {
+            mStore.put(key, new ItemViewModel());
+        }
+    }
+
+    @Benchmark
+    public ViewModelStore clear() {
+        mStore.clear();
+        return mStore;
+    }
+}
@@ -0,0 +1,69 @@
+package androidx.lifecycle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * setTagIfAbsent 在多线程竞争下的开销，以及新 ViewModel 第一次放 tag 的开销。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewModelTagBenchmark {
+
+    private static final int TAGS = 4;
+
+    public static class TaggedViewModel extends ViewModel {
+    }
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        final TaggedViewModel mViewModel = new TaggedViewModel();
+        final String[] mKeys = new String[TAGS];
+
+        @Setup
+        public void setUp() {
+            for (int i = 0; i < TAGS; i++) {
+                mKeys[i] = "tag" + i;
+                mViewModel.setTagIfAbsent(mKeys[i], new Object());
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Local {
+        int mIndex;
+        final Object mValue = new Object();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object setTagIfAbsentExistingContended(Shared shared, Local local) {
+        return shared.mViewModel.setTagIfAbsent(shared.mKeys[local.mIndex++ & (TAGS - 1)],
+                local.mValue);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getTagContended(Shared shared, Local local) {
+        return shared.mViewModel.getTag(shared.mKeys[local.mIndex++ & (TAGS - 1)]);
+    }
+
+    @Benchmark
+    public Object firstTagOnNewViewModel(Local local) {
+        return new TaggedViewModel().setTagIfAbsent("tag", local.mValue);
+    }
+}
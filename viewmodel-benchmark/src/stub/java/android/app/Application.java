@@ -0,0 +1,9 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * JVM 上运行基准测试用的空 Application。
+ */
+public class Application extends Context {
+}
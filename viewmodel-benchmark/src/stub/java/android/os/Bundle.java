@@ -0,0 +1,23 @@
+package android.os;
+
+import java.util.HashMap;
+
+public final class Bundle {
+    private final HashMap<String, Object> mMap = new HashMap<>();
+
+    public void putByteArray(String key, byte[] value) {
+        mMap.put(key, value);
+    }
+
+    public byte[] getByteArray(String key) {
+        return (byte[]) mMap.get(key);
+    }
+
+    public void putString(String key, String value) {
+        mMap.put(key, value);
+    }
+
+    public String getString(String key) {
+        return (String) mMap.get(key);
+    }
+}
@@ -0,0 +1,20 @@
+package android.os;
+
+/**
+ * 基准测试中没有主线程消息循环，投递到主线程的任务直接丢弃。
+ */
+public final class Looper {
+    private static final Looper sMainLooper = new Looper();
+    private static final MessageQueue sQueue = new MessageQueue();
+
+    private Looper() {
+    }
+
+    public static Looper getMainLooper() {
+        return sMainLooper;
+    }
+
+    public static MessageQueue myQueue() {
+        return sQueue;
+    }
+}
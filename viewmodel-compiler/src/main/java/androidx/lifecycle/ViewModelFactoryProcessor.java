@@ -0,0 +1,165 @@
+package androidx.lifecycle;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * 为 {@code @GenerateViewModelFactory} 标记的 ViewModel 生成 {@code 类名_ViewModelFactory}，
+ * 它继承 {@code ViewModelProvider.GeneratedFactory}，直接调用 ViewModel 的构造函数。
+ */
+public class ViewModelFactoryProcessor extends AbstractProcessor {
+
+    private static final String ANNOTATION = "androidx.lifecycle.GenerateViewModelFactory";
+    private static final String VIEW_MODEL = "androidx.lifecycle.ViewModel";
+    private static final String ANDROID_VIEW_MODEL = "androidx.lifecycle.AndroidViewModel";
+    private static final String APPLICATION = "android.app.Application";
+    private static final String FACTORY_SUFFIX = "_ViewModelFactory";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ANNOTATION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION);
+        if (annotation == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@GenerateViewModelFactory can only be applied to classes");
+                continue;
+            }
+            generate((TypeElement) element);
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) {
+        Elements elements = processingEnv.getElementUtils();
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror viewModel = types.erasure(elements.getTypeElement(VIEW_MODEL).asType());
+        TypeMirror androidViewModel =
+                types.erasure(elements.getTypeElement(ANDROID_VIEW_MODEL).asType());
+        TypeMirror typeMirror = types.erasure(type.asType());
+
+        if (!types.isAssignable(typeMirror, viewModel)) {
+            error(type, "@GenerateViewModelFactory class must extend " + VIEW_MODEL);
+            return;
+        }
+        Set<Modifier> modifiers = type.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT) || modifiers.contains(Modifier.PRIVATE)) {
+            error(type, "@GenerateViewModelFactory class must be concrete and not private");
+            return;
+        }
+        if (type.getNestingKind().isNested() && !modifiers.contains(Modifier.STATIC)) {
+            error(type, "@GenerateViewModelFactory nested class must be static");
+            return;
+        }
+        boolean needsApplication = types.isAssignable(typeMirror, androidViewModel);
+        if (!hasPublicConstructor(type, needsApplication)) {
+            error(type, needsApplication
+                    ? "AndroidViewModel needs a public constructor taking only Application"
+                    : "ViewModel needs a public no-arg constructor");
+            return;
+        }
+
+        PackageElement packageElement = elements.getPackageOf(type);
+        String packageName = packageElement.isUnnamed()
+                ? "" : packageElement.getQualifiedName().toString();
+        String canonicalName = type.getQualifiedName().toString();
+        String className = packageName.isEmpty()
+                ? canonicalName : canonicalName.substring(packageName.length() + 1);
+        String factoryName = className.replace(".", "_") + FACTORY_SUFFIX;
+
+        StringBuilder sb = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("import android.app.Application;\n")
+                .append("import androidx.lifecycle.ViewModel;\n")
+                .append("import androidx.lifecycle.ViewModelProvider;\n\n")
+                .append("/**\n * Generated by ViewModelFactoryProcessor, do not modify.\n */\n")
+                .append("public final class ").append(factoryName)
+                .append(" extends ViewModelProvider.GeneratedFactory {\n\n")
+                .append("    public ").append(factoryName).append("() {\n    }\n\n")
+                .append("    @SuppressWarnings(\"unchecked\")\n")
+                .append("    @Override\n")
+                .append("    public <T extends ViewModel> T create(Application application, "
+                        + "Class<T> modelClass) {\n");
+        if (needsApplication) {
+            sb.append("        if (application == null) {\n")
+                    .append("            throw new IllegalArgumentException(\"")
+                    .append(canonicalName).append(" needs an Application\");\n")
+                    .append("        }\n")
+                    .append("        return (T) new ").append(canonicalName)
+                    .append("(application);\n");
+        } else {
+            sb.append("        return (T) new ").append(canonicalName).append("();\n");
+        }
+        sb.append("    }\n}\n");
+
+        String qualifiedFactoryName = packageName.isEmpty()
+                ? factoryName : packageName + "." + factoryName;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedFactoryName, type);
+            Writer writer = file.openWriter();
+            try {
+                writer.write(sb.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error(type, "Failed to write " + qualifiedFactoryName + ": " + e.getMessage());
+        }
+    }
+
+    private boolean hasPublicConstructor(TypeElement type, boolean needsApplication) {
+        for (ExecutableElement constructor
+                : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (!constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                continue;
+            }
+            List<? extends VariableElement> parameters = constructor.getParameters();
+            if (!needsApplication && parameters.isEmpty()) {
+                return true;
+            }
+            if (needsApplication && parameters.size() == 1
+                    && processingEnv.getTypeUtils().erasure(parameters.get(0).asType())
+                    .toString().equals(APPLICATION)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}